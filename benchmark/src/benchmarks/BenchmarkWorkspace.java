@@ -0,0 +1,108 @@
+package benchmarks;
+
+import Models.RMetaData;
+import utils.FileHelper;
+import utils.RMetaDataTypeAdapter;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Creates the shared folder and config.properties file the benchmarks run against.
+ * The Config class reads the config.properties file from user.dir once, hence prepare must be called before any class of the
+ * coordinator is used. JMH runs every benchmark within a fresh fork, so each fork may prepare its own workspace.
+ * The repositories are stored as escaped json strings, like the crawler writes them.
+ */
+class BenchmarkWorkspace {
+
+    private static Path workspace;
+
+    /**
+     * Create (or reuse) a workspace with a synthetic repositories.json file of the given size and point user.dir to it.
+     * The generated repositories.json files are kept within the temp folder, since writing 1M entries takes a while.
+     * @param repositories Number of repositories within the repositories.json file.
+     * @return The shared folder containing the repositories.json file.
+     * @throws IOException If the workspace cannot be written.
+     */
+    static Path prepare(int repositories) throws IOException {
+        Path cache = Paths.get(System.getProperty("java.io.tmpdir"), "containercoordinator-benchmark");
+        Path template = cache.resolve("repositories-" + repositories + "-strings.json");
+        if (!Files.exists(template))
+            writeRepositories(template, repositories);
+
+        workspace = Files.createTempDirectory(cache, "run-");
+        Path shared = Files.createDirectories(workspace.resolve("shared"));
+        Files.createDirectories(workspace.resolve("container"));
+        Files.copy(template, shared.resolve("repositories.json"), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(workspace.resolve("config.properties"), Arrays.asList(
+                "buildSystem = CMAKE",
+                "filePath = " + shared,
+                "containerPath = " + workspace.resolve("container"),
+                "analysisTool = none"), StandardCharsets.UTF_8);
+        System.setProperty("user.dir", workspace.toString());
+        return shared;
+    }
+
+    /**
+     * Delete the workspace created by prepare. The generated repositories.json templates are kept.
+     */
+    static void cleanUp() {
+        if (workspace != null)
+            FileHelper.deleteDirectory(workspace.toString());
+        workspace = null;
+    }
+
+    /**
+     * @param id Id of the repository.
+     * @return A repository with all fields set by the crawler, as found within a fresh repositories.json file.
+     */
+    static RMetaData createRepository(long id) {
+        RMetaData rMetaData = new RMetaData();
+        rMetaData.setId(id);
+        rMetaData.setName("repository-" + id);
+        rMetaData.setOwner("owner-" + (id % 1000));
+        rMetaData.setOwnerType("User");
+        rMetaData.setDescription("Synthetic repository " + id + " used by the benchmarks");
+        rMetaData.setLanguage("C++");
+        rMetaData.setHasDownloads(true);
+        rMetaData.setSize((int) (id % 100000));
+        rMetaData.setCreatedAt(new Date(1500000000000L + id * 1000));
+        rMetaData.setPushedAt(new Date(1550000000000L + id * 1000));
+        rMetaData.setDefaultBranch("master");
+        rMetaData.setLatestCommitId(String.format("%040x", id));
+        rMetaData.setForksCount((int) (id % 50));
+        rMetaData.setOpenIssuesCount((int) (id % 20));
+        rMetaData.setStargazersCount((int) (id % 500));
+        rMetaData.setHtmlUrl("https://github.com/owner-" + (id % 1000) + "/repository-" + id);
+        rMetaData.setCloneUrl("https://github.com/owner-" + (id % 1000) + "/repository-" + id + ".git");
+        rMetaData.setBuildSystem("CMAKE");
+        rMetaData.setBuildFilePath(new ArrayList<>(Arrays.asList("CMakeLists.txt", "conanfile.txt")));
+        return rMetaData;
+    }
+
+    private static void writeRepositories(Path path, int repositories) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Gson gson = RMetaDataTypeAdapter.getGson();
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(tmp, StandardCharsets.UTF_8));
+             JsonWriter jsonWriter = new JsonWriter(writer)) {
+            jsonWriter.beginArray();
+            for (int i = 0; i < repositories; i++)
+                jsonWriter.value(gson.toJson(createRepository(i), RMetaData.class));
+            jsonWriter.endArray();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
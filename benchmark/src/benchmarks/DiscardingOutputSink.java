@@ -0,0 +1,22 @@
+package benchmarks;
+
+import utils.ProcessOutputSink;
+
+/**
+ * Drops the output of the started processes, so that the benchmarks measure the pumping of the pipes
+ * instead of the console or the error log of a coordinator.
+ */
+class DiscardingOutputSink implements ProcessOutputSink {
+
+    @Override
+    public void onOutput(String stage, String line) {
+    }
+
+    @Override
+    public void onError(String stage, String line) {
+    }
+
+    @Override
+    public void onStartFailure(String message) {
+    }
+}
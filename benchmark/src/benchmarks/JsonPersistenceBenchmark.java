@@ -0,0 +1,117 @@
+package benchmarks;
+
+import Models.RMetaData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.JsonReader;
+import utils.JsonWriter;
+import utils.RepositoryIndex;
+import utils.ResultStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the persistence layer on synthetic repositories.json files with 1k, 100k and 1M entries:
+ * building the offset index, reading single repositories and writing results back.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class JsonPersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int repositories;
+
+    private Path repositoriesJson;
+    private RMetaData result;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path shared = BenchmarkWorkspace.prepare(repositories);
+        repositoriesJson = shared.resolve("repositories.json");
+        result = BenchmarkWorkspace.createRepository(repositories / 2);
+        result.setBuildStatus("SUCCESS");
+        // Load the singleton (and the index) outside of the measurement.
+        JsonReader.getInstance().getRepositoryCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ResultStore.getInstance().close();
+        BenchmarkWorkspace.cleanUp();
+    }
+
+    /**
+     * Scanning the repositories.json file for the element offsets, as done on the first start or after the file changed.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int buildIndex() throws IOException {
+        Files.deleteIfExists(repositoriesJson.resolveSibling(repositoriesJson.getFileName() + ".idx"));
+        RepositoryIndex repositoryIndex = RepositoryIndex.loadOrBuild(repositoriesJson.toString());
+        try {
+            return repositoryIndex.size();
+        } finally {
+            repositoryIndex.close();
+        }
+    }
+
+    /**
+     * Loading the persisted index, as done on every regular start.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int loadIndex() throws IOException {
+        RepositoryIndex repositoryIndex = RepositoryIndex.loadOrBuild(repositoriesJson.toString());
+        try {
+            return repositoryIndex.size();
+        } finally {
+            repositoryIndex.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RMetaData deserializeRepository() {
+        return JsonReader.getInstance().deserializeRepositoryFromJsonArray(ThreadLocalRandom.current().nextInt(repositories));
+    }
+
+    /**
+     * Appending a result to the results.json file, the regular way results are stored.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void appendResult() {
+        ResultStore.getInstance().append(result, ThreadLocalRandom.current().nextInt(repositories));
+    }
+
+    /**
+     * Rewriting the whole repositories.json file for a single result. Very slow for large files, hence single shots only.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void updateRepositoryInJsonArray() {
+        JsonWriter.getInstance().updateRepositoryInJsonArray(result, ThreadLocalRandom.current().nextInt(repositories));
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.ProcessHelper;
+import utils.ProcessMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of ProcessHelper.executeProcess against a local stand-in process that floods stdout and stderr at the same time,
+ * like a verbose build does. Measures the cost of pumping the output, not of the process itself, nor of the console or log
+ * the output is written to.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProcessHelperBenchmark {
+
+    // Lines written to each of stdout and stderr.
+    @Param({"1000", "100000"})
+    public int lines;
+
+    private String[] floodCommand;
+    private DiscardingOutputSink outputSink;
+
+    @Setup
+    public void setUp() {
+        outputSink = new DiscardingOutputSink();
+        floodCommand = new String[]{"bash", "-c",
+                "yes 'compiling some/source/file.cpp with a reasonably long command line' | head -n " + lines + " & " +
+                "yes 'warning: unused variable in some/source/file.cpp' | head -n " + lines + " >&2; wait"};
+    }
+
+    @Benchmark
+    public int executeProcess() {
+        return ProcessHelper.executeProcess(new ProcessBuilder(floodCommand), outputSink);
+    }
+
+    @Benchmark
+    public int executeProcessWithMetrics() {
+        return ProcessHelper.executeProcess(new ProcessBuilder(floodCommand), outputSink, 0, new ProcessMetrics());
+    }
+}
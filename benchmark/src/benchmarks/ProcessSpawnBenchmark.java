@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.Command;
+import utils.ProcessHelper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of starting a short-lived tool directly compared to starting it through "bash -c 'cd ... && tool'",
+ * the way every tool was called before. The extraction and analysis stages start such tools thousands of times per run.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProcessSpawnBenchmark {
+
+    private String directory;
+    private DiscardingOutputSink outputSink;
+
+    @Setup
+    public void setUp() {
+        outputSink = new DiscardingOutputSink();
+        directory = System.getProperty("java.io.tmpdir");
+    }
+
+    @Benchmark
+    public int spawnDirect() {
+        return ProcessHelper.executeProcess(new Command("true").directory(directory), outputSink, 0, null);
+    }
+
+    @Benchmark
+    public int spawnThroughShell() {
+        return ProcessHelper.executeProcess(new Command("bash", "-c", "cd " + directory + " && true"), outputSink, 0, null);
+    }
+}
@@ -0,0 +1,45 @@
+package Models;
+
+/**
+ * Outcome of the analysis tool for a single LLVM IR file.
+ */
+public class AnalysisResult {
+
+    private String file;
+    private int exitCode;
+    // Wall time of the tool invocation. Files analysed within the same successful batch share the time of the whole batch.
+    private long wallTimeMillis;
+
+    public AnalysisResult() {
+    }
+
+    public AnalysisResult(String file, int exitCode, long wallTimeMillis) {
+        this.file = file;
+        this.exitCode = exitCode;
+        this.wallTimeMillis = wallTimeMillis;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    public long getWallTimeMillis() {
+        return wallTimeMillis;
+    }
+
+    public void setWallTimeMillis(long wallTimeMillis) {
+        this.wallTimeMillis = wallTimeMillis;
+    }
+}
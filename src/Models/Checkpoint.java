@@ -0,0 +1,13 @@
+package Models;
+
+/**
+ * Stages of the container pipeline that are recorded within the progress journal once completed, in pipeline order.
+ */
+public enum Checkpoint {
+    FETCHED,
+    DEPENDENCIES_INSTALLED,
+    BUILT,
+    EXTRACTED,
+    ANALYZED,
+    PERSISTED
+}
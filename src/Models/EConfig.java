@@ -16,6 +16,46 @@ public enum EConfig {
     HOSTPATH("hostPath"),
     CONTAINERPATH("containerPath"),
     ANALSISTOOL("analysisTool"),
+    WORKERS("workers"),
+    NETWORKSLOTS("networkSlots"),
+    CPUSLOTS("cpuSlots"),
+    MEMORYPERWORKER("memoryPerWorkerMB"),
+    RESULTSYNCEVERY("resultSyncEvery"),
+    RESULTSYNCMILLIS("resultSyncMillis"),
+    CLONETIMEOUT("cloneTimeout"),
+    CONANTIMEOUT("conanTimeout"),
+    CMAKETIMEOUT("cmakeTimeout"),
+    BUILDTIMEOUT("buildTimeout"),
+    EXTRACTTIMEOUT("extractTimeout"),
+    DISASSEMBLETIMEOUT("disassembleTimeout"),
+    ANALYSISTIMEOUT("analysisTimeout"),
+    BUILDJOBS("buildJobs"),
+    CMAKEGENERATOR("cmakeGenerator"),
+    CCACHEDIR("ccacheDir"),
+    GITMIRRORPATH("gitMirrorPath"),
+    CHECKOUTMODE("checkoutMode"),
+    EXTRACTWORKERS("extractWorkers"),
+    ANALYSISWORKERS("analysisWorkers"),
+    ANALYSISBATCHSIZE("analysisBatchSize"),
+    IRFORMAT("irFormat"),
+    PIPELINEMODE("pipelineMode"),
+    FETCHWORKERS("fetchWorkers"),
+    DEPENDENCYWORKERS("dependencyWorkers"),
+    BUILDWORKERS("buildWorkers"),
+    EXTRACTSTAGEWORKERS("extractStageWorkers"),
+    ANALYSISSTAGEWORKERS("analysisStageWorkers"),
+    STAGEQUEUECAPACITY("stageQueueCapacity"),
+    JFREVENTS("jfrEvents"),
+    RESUME("resume"),
+    SHARDING("sharding"),
+    NODEID("nodeId"),
+    LEASESECONDS("leaseSeconds"),
+    CONANCACHE("conanCache"),
+    PREWARMPACKAGES("prewarmPackages"),
+    LOGQUEUECAPACITY("logQueueCapacity"),
+    PROCESSLOGS("processLogs"),
+    ERRORMESSAGELIMIT("errorMessageLimit"),
+    JOBORDER("jobOrder"),
     UNKNOWN("unknown");
 
 
@@ -50,6 +90,86 @@ public enum EConfig {
                 return EConfig.CONTAINERPATH;
             case "analysisTool":
                 return EConfig.ANALSISTOOL;
+            case "workers":
+                return EConfig.WORKERS;
+            case "networkSlots":
+                return EConfig.NETWORKSLOTS;
+            case "cpuSlots":
+                return EConfig.CPUSLOTS;
+            case "memoryPerWorkerMB":
+                return EConfig.MEMORYPERWORKER;
+            case "resultSyncEvery":
+                return EConfig.RESULTSYNCEVERY;
+            case "resultSyncMillis":
+                return EConfig.RESULTSYNCMILLIS;
+            case "cloneTimeout":
+                return EConfig.CLONETIMEOUT;
+            case "conanTimeout":
+                return EConfig.CONANTIMEOUT;
+            case "cmakeTimeout":
+                return EConfig.CMAKETIMEOUT;
+            case "buildTimeout":
+                return EConfig.BUILDTIMEOUT;
+            case "extractTimeout":
+                return EConfig.EXTRACTTIMEOUT;
+            case "disassembleTimeout":
+                return EConfig.DISASSEMBLETIMEOUT;
+            case "analysisTimeout":
+                return EConfig.ANALYSISTIMEOUT;
+            case "buildJobs":
+                return EConfig.BUILDJOBS;
+            case "cmakeGenerator":
+                return EConfig.CMAKEGENERATOR;
+            case "ccacheDir":
+                return EConfig.CCACHEDIR;
+            case "gitMirrorPath":
+                return EConfig.GITMIRRORPATH;
+            case "checkoutMode":
+                return EConfig.CHECKOUTMODE;
+            case "extractWorkers":
+                return EConfig.EXTRACTWORKERS;
+            case "analysisWorkers":
+                return EConfig.ANALYSISWORKERS;
+            case "analysisBatchSize":
+                return EConfig.ANALYSISBATCHSIZE;
+            case "irFormat":
+                return EConfig.IRFORMAT;
+            case "pipelineMode":
+                return EConfig.PIPELINEMODE;
+            case "fetchWorkers":
+                return EConfig.FETCHWORKERS;
+            case "dependencyWorkers":
+                return EConfig.DEPENDENCYWORKERS;
+            case "buildWorkers":
+                return EConfig.BUILDWORKERS;
+            case "extractStageWorkers":
+                return EConfig.EXTRACTSTAGEWORKERS;
+            case "analysisStageWorkers":
+                return EConfig.ANALYSISSTAGEWORKERS;
+            case "stageQueueCapacity":
+                return EConfig.STAGEQUEUECAPACITY;
+            case "jfrEvents":
+                return EConfig.JFREVENTS;
+            case "resume":
+                return EConfig.RESUME;
+            case "sharding":
+                return EConfig.SHARDING;
+            case "nodeId":
+                return EConfig.NODEID;
+            case "leaseSeconds":
+                return EConfig.LEASESECONDS;
+            case "conanCache":
+                return EConfig.CONANCACHE;
+            case "prewarmPackages":
+                return EConfig.PREWARMPACKAGES;
+            case "logQueueCapacity":
+                return EConfig.LOGQUEUECAPACITY;
+            case "processLogs":
+                return EConfig.PROCESSLOGS;
+            case "errorMessageLimit":
+                return EConfig.ERRORMESSAGELIMIT;
+            case "jobOrder":
+                return EConfig.JOBORDER;
             default:
                 return EConfig.UNKNOWN;
         }
@@ -39,6 +39,21 @@ public class RMetaData {
     private int archives;
     private List<String> errorMessage;
     private List<String> packageDependencies;
+    private List<String> timedOutStages;
+    private int ccacheHits;
+    private int ccacheMisses;
+    private String checkoutMode;
+    // Size of the workspace after cloning, i.e. working tree and .git folders including the submodules. With the git mirror
+    // cache enabled, the objects borrowed from the mirror are not included.
+    private long workspaceBytes;
+    // Number of LLVM IR files passed to the analysis.
+    private int irFiles;
+    // Number of error lines of the last run, errorMessage only holds a deduplicated summary of them.
+    private long errorLines;
+    // Sidecar file holding all error lines, null if there were none.
+    private String errorLogFile;
+    private List<StageMetrics> stageMetrics;
+    private List<AnalysisResult> analysisResults;
 
     public long getId() {
         return id;
@@ -247,4 +262,84 @@ public class RMetaData {
     public void setPackageDependencies(List<String> packageDependencies) {
         this.packageDependencies = packageDependencies;
     }
+
+    public List<String> getTimedOutStages() {
+        return timedOutStages;
+    }
+
+    public void setTimedOutStages(List<String> timedOutStages) {
+        this.timedOutStages = timedOutStages;
+    }
+
+    public int getCcacheHits() {
+        return ccacheHits;
+    }
+
+    public void setCcacheHits(int ccacheHits) {
+        this.ccacheHits = ccacheHits;
+    }
+
+    public int getCcacheMisses() {
+        return ccacheMisses;
+    }
+
+    public void setCcacheMisses(int ccacheMisses) {
+        this.ccacheMisses = ccacheMisses;
+    }
+
+    public String getCheckoutMode() {
+        return checkoutMode;
+    }
+
+    public void setCheckoutMode(String checkoutMode) {
+        this.checkoutMode = checkoutMode;
+    }
+
+    public List<StageMetrics> getStageMetrics() {
+        return stageMetrics;
+    }
+
+    public void setStageMetrics(List<StageMetrics> stageMetrics) {
+        this.stageMetrics = stageMetrics;
+    }
+
+    public List<AnalysisResult> getAnalysisResults() {
+        return analysisResults;
+    }
+
+    public void setAnalysisResults(List<AnalysisResult> analysisResults) {
+        this.analysisResults = analysisResults;
+    }
+
+    public long getWorkspaceBytes() {
+        return workspaceBytes;
+    }
+
+    public void setWorkspaceBytes(long workspaceBytes) {
+        this.workspaceBytes = workspaceBytes;
+    }
+
+    public int getIrFiles() {
+        return irFiles;
+    }
+
+    public void setIrFiles(int irFiles) {
+        this.irFiles = irFiles;
+    }
+
+    public long getErrorLines() {
+        return errorLines;
+    }
+
+    public void setErrorLines(long errorLines) {
+        this.errorLines = errorLines;
+    }
+
+    public String getErrorLogFile() {
+        return errorLogFile;
+    }
+
+    public void setErrorLogFile(String errorLogFile) {
+        this.errorLogFile = errorLogFile;
+    }
 }
@@ -0,0 +1,37 @@
+package Models;
+
+/**
+ * The few fields of a repository required to select and order the repositories of a run, read without deserializing
+ * the whole repository (see JsonReader.readRepositorySummary).
+ */
+public class RepositorySummary {
+
+    private int size;
+    private String buildStatus;
+    // Summed wall time of the stage metrics, 0 if the repository was not processed yet.
+    private long measuredMillis;
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getBuildStatus() {
+        return buildStatus;
+    }
+
+    public void setBuildStatus(String buildStatus) {
+        this.buildStatus = buildStatus;
+    }
+
+    public long getMeasuredMillis() {
+        return measuredMillis;
+    }
+
+    public void setMeasuredMillis(long measuredMillis) {
+        this.measuredMillis = measuredMillis;
+    }
+}
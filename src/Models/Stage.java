@@ -0,0 +1,28 @@
+package Models;
+
+/**
+ * Steps of the container pipeline that run an external tool.
+ */
+public enum Stage {
+    CLONE("CLONING"),
+    SUBMODULES("CLONING SUBMODULES"),
+    RESET("RESET WORKING TREE"),
+    CONAN_INSTALL("CONAN INSTALL"),
+    FOLDER_PREPARATION("FOLDER PREPARATION"),
+    CMAKE_PREPARATION("CMAKE PREPARATION"),
+    CMAKE_BUILD("CMAKE BUILD"),
+    EXTRACT_BC("EXTRACT LLVM BITCODE"),
+    DISASSEMBLE("LLVM IR DISASSEMBLE"),
+    ANALYSIS("ANALYSIS");
+
+    private String name;
+
+    Stage(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
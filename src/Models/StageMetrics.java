@@ -0,0 +1,74 @@
+package Models;
+
+/**
+ * Measurements of a single pipeline stage that are stored together with the repository metadata.
+ */
+public class StageMetrics {
+
+    private String stage;
+    private long wallTimeMillis;
+    // Number of external processes the stage ran.
+    private int processes;
+    // Summed CPU time of all processes of the stage including their descendants.
+    private long cpuTimeMillis;
+    // Largest resident set size of a single process tree in kB, -1 if unknown.
+    private long peakRssKB;
+    // 0 or the exit code of the last failed process.
+    private int exitCode;
+
+    public StageMetrics() {
+    }
+
+    public StageMetrics(String stage, long wallTimeMillis) {
+        this.stage = stage;
+        this.wallTimeMillis = wallTimeMillis;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public long getWallTimeMillis() {
+        return wallTimeMillis;
+    }
+
+    public void setWallTimeMillis(long wallTimeMillis) {
+        this.wallTimeMillis = wallTimeMillis;
+    }
+
+    public int getProcesses() {
+        return processes;
+    }
+
+    public void setProcesses(int processes) {
+        this.processes = processes;
+    }
+
+    public long getCpuTimeMillis() {
+        return cpuTimeMillis;
+    }
+
+    public void setCpuTimeMillis(long cpuTimeMillis) {
+        this.cpuTimeMillis = cpuTimeMillis;
+    }
+
+    public long getPeakRssKB() {
+        return peakRssKB;
+    }
+
+    public void setPeakRssKB(long peakRssKB) {
+        this.peakRssKB = peakRssKB;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(int exitCode) {
+        this.exitCode = exitCode;
+    }
+}
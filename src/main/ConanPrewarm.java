@@ -0,0 +1,230 @@
+package main;
+
+import Models.RMetaData;
+import utils.Command;
+import utils.ConanCacheHelper;
+import utils.ErrorLog;
+import utils.FileHelper;
+import utils.GitMirrorCache;
+import utils.JsonReader;
+import utils.ProcessHelper;
+import utils.ProcessOutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Builds the packages most commonly required by the corpus into the conan cache ahead of a run, so that the workers only
+ * download (or reuse) them instead of building them from source again and again.
+ * The requirements of a repository are taken from the dependencies recorded by an earlier run, otherwise from the
+ * conanfile.txt or conanfile.py at the commit to build: read from the git mirror cache if the repository is mirrored,
+ * downloaded from GitHub otherwise.
+ */
+public class ConanPrewarm {
+
+    private static final String GITHUB = "https://github.com/";
+    private static final String GITHUB_RAW = "https://raw.githubusercontent.com/";
+    private static final String[] CONANFILES = {"conanfile.txt", "conanfile.py"};
+    // A package required by a single repository is built by its worker anyway.
+    private static final int MIN_REPOSITORIES = 2;
+
+    private final Logger logger;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).followRedirects(HttpClient.Redirect.NORMAL).build();
+    private final Map<String, AtomicInteger> referenceCounts = new ConcurrentHashMap<>();
+
+    public ConanPrewarm(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Count the requirements of the given repositories and install the most common ones.
+     * @param arrayIndices The indices to the repositories within the repositories.json file.
+     */
+    public void run(List<Integer> arrayIndices) {
+        if (!ConanCacheHelper.isEnabled())
+            logger.warning("No shared conan cache configured (conanCache). Prewarming the conan cache of the user.");
+
+        long startTimeScan = System.nanoTime();
+        AtomicInteger scanned = new AtomicInteger();
+        ExecutorService scanExecutor = Executors.newFixedThreadPool(Math.max(1, Config.NETWORKSLOTS));
+        for (int arrayIndex : arrayIndices) {
+            scanExecutor.submit(() -> {
+                RMetaData rMetaData = JsonReader.getInstance().deserializeRepositoryFromJsonArray(arrayIndex);
+                if (rMetaData != null) {
+                    for (String reference : readRequirements(rMetaData))
+                        referenceCounts.computeIfAbsent(reference, r -> new AtomicInteger()).incrementAndGet();
+                }
+                int count = scanned.incrementAndGet();
+                if (count % 1000 == 0)
+                    logger.info("Scanned the requirements of " + count + " of " + arrayIndices.size() + " repositories.");
+            });
+        }
+        scanExecutor.shutdown();
+        try {
+            scanExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            scanExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        logger.info("Scanning " + arrayIndices.size() + " repositories took " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTimeScan) +
+                " seconds - " + referenceCounts.size() + " distinct packages");
+
+        List<Map.Entry<String, AtomicInteger>> ranking = new ArrayList<>(referenceCounts.entrySet());
+        ranking.removeIf(entry -> entry.getValue().get() < MIN_REPOSITORIES);
+        ranking.sort(Collections.reverseOrder(Map.Entry.comparingByValue((a, b) -> Integer.compare(a.get(), b.get()))));
+        List<Map.Entry<String, AtomicInteger>> selected = ranking.subList(0, Math.min(Config.PREWARMPACKAGES, ranking.size()));
+
+        System.out.println("PREWARMING " + selected.size() + " CONAN PACKAGES");
+        System.out.println("----------------------------------------------------");
+        int failed = 0;
+        for (Map.Entry<String, AtomicInteger> entry : selected) {
+            if (!install(entry.getKey(), entry.getValue().get()))
+                failed++;
+        }
+        logger.info("Prewarmed " + (selected.size() - failed) + " of " + selected.size() + " conan packages.");
+    }
+
+    /**
+     * @param rMetaData The repository.
+     * @return The package references required by the repository, empty if none are known.
+     */
+    private Set<String> readRequirements(RMetaData rMetaData) {
+        if (rMetaData.getPackageDependencies() != null && !rMetaData.getPackageDependencies().isEmpty())
+            return new LinkedHashSet<>(rMetaData.getPackageDependencies());
+        for (String conanfileName : CONANFILES) {
+            String conanfile = readConanfile(rMetaData, conanfileName);
+            if (conanfile != null)
+                return conanfileName.endsWith(".txt") ? ConanCacheHelper.parseConanfileTxt(conanfile) : ConanCacheHelper.parseConanfilePy(conanfile);
+        }
+        return Collections.emptySet();
+    }
+
+    private String readConanfile(RMetaData rMetaData, String conanfileName) {
+        if (rMetaData.getLatestCommitId() == null)
+            return null;
+        if (GitMirrorCache.isEnabled()) {
+            String mirror = GitMirrorCache.getRepositoryMirror(rMetaData.getId());
+            if (GitMirrorCache.mirrorExists(mirror))
+                return readFromMirror(mirror, rMetaData.getLatestCommitId() + ":" + conanfileName);
+        }
+        if (rMetaData.getHtmlUrl() != null && rMetaData.getHtmlUrl().startsWith(GITHUB))
+            return download(GITHUB_RAW + rMetaData.getHtmlUrl().substring(GITHUB.length()) + "/" + rMetaData.getLatestCommitId() + "/" + conanfileName);
+        return null;
+    }
+
+    /**
+     * @param mirror Path to the bare mirror.
+     * @param object The file in the form commit:path.
+     * @return The content of the file or null if it does not exist at that commit.
+     */
+    private static String readFromMirror(String mirror, String object) {
+        try {
+            Process process = new ProcessBuilder("git", "-C", mirror, "show", object).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            String content;
+            try (InputStream inputStream = process.getInputStream()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                inputStream.transferTo(buffer);
+                content = buffer.toString(StandardCharsets.UTF_8);
+            }
+            return process.waitFor() == 0 ? content : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private String download(String url) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET().build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? response.body() : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Build a package and its dependencies into the conan cache with the profile used by the workers.
+     * @param reference The package reference.
+     * @param repositories The number of repositories requiring the package.
+     * @return True if the package was installed.
+     */
+    private boolean install(String reference, int repositories) {
+        System.out.println("RUNNING: CONAN INSTALL " + reference + " (required by " + repositories + " repositories)");
+        String installFolder;
+        try {
+            installFolder = Files.createTempDirectory("conan-prewarm").toString();
+        } catch (IOException e) {
+            System.err.println("Couldn't create a temporary install folder.");
+            System.err.println(e.getMessage());
+            return false;
+        }
+        // Conan 1 treats a reference without user and channel as a path, unless it ends with '@'.
+        String installReference = reference.contains("@") ? reference : reference + "@";
+        InstallOutput installOutput = new InstallOutput();
+        long startTimeInstall = System.nanoTime();
+        int exitVal = ProcessHelper.executeProcess(new Command("conan", "install", installReference, "-pr=clang", "--build=missing", "-if", installFolder)
+                .environment(ConanCacheHelper.getEnvironment()).answerPrompts("y"), installOutput, Config.CONANTIMEOUT, null);
+        FileHelper.deleteDirectory(installFolder);
+        long durationInstall = System.nanoTime() - startTimeInstall;
+        if (exitVal == 0) {
+            System.out.println("FINISHED: CONAN INSTALL " + reference);
+            logger.info("FINISHED: PREWARM " + reference + " took " + TimeUnit.NANOSECONDS.toSeconds(durationInstall) + " seconds");
+        } else {
+            System.err.println("FAILED: CONAN INSTALL " + reference);
+            for (String errorMessage : installOutput.errorMessages.getSummary())
+                System.err.println(errorMessage);
+            logger.severe("FAILED: PREWARM " + reference);
+        }
+        System.out.println("----------------------------------------------------");
+        return exitVal == 0;
+    }
+
+    /**
+     * Prints the output of conan and keeps a summary of its error messages.
+     */
+    private static class InstallOutput implements ProcessOutputSink {
+        private final ErrorLog errorMessages = new ErrorLog(Config.ERRORMESSAGELIMIT);
+
+        @Override
+        public void onOutput(String stage, String line) {
+            System.out.println(line);
+        }
+
+        @Override
+        public void onError(String stage, String line) {
+            errorMessages.add(stage, line);
+        }
+
+        @Override
+        public void onStartFailure(String message) {
+            errorMessages.add(message);
+        }
+    }
+}
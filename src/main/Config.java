@@ -2,8 +2,12 @@ package main;
 
 import Models.BuildSystem;
 import Models.EConfig;
+import Models.Stage;
 import utils.PropertyFileReader;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
 public class Config {
 
     public static final String LANGUAGE = PropertyFileReader.getInstance().getProperty(EConfig.LANGUAGE);
@@ -13,10 +17,140 @@ public class Config {
     public static final String OAUTHTOKEN = PropertyFileReader.getInstance().getProperty(EConfig.OAUTHTOKEN);
     public static final String FILEPATH = PropertyFileReader.getInstance().getProperty(EConfig.FILEPATH);
     public static final String JSONFILENAME = "repositories.json";
-    public static final String RESULTFILENAME = "results.json";
+    // Each node writes its own results and progress files when sharding is enabled.
+    public static final String RESULTFILENAME = getNodeFileName("results");
+    public static final String PROGRESSFILENAME = getNodeFileName("progress");
     public static  final String HOSTPATH = PropertyFileReader.getInstance().getProperty(EConfig.HOSTPATH);
     public static  final String CONTAINERPATH = PropertyFileReader.getInstance().getProperty(EConfig.CONTAINERPATH);
     public static  final String ANALYSISTOOL = PropertyFileReader.getInstance().getProperty(EConfig.ANALSISTOOL);
+    // 0 means the value is derived from the available cores and memory.
+    public static final int WORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.WORKERS, 0);
+    public static final int NETWORKSLOTS = PropertyFileReader.getInstance().getIntProperty(EConfig.NETWORKSLOTS, 4);
+    public static final int CPUSLOTS = PropertyFileReader.getInstance().getIntProperty(EConfig.CPUSLOTS, 0);
+    public static final int MEMORYPERWORKER = PropertyFileReader.getInstance().getIntProperty(EConfig.MEMORYPERWORKER, 2048);
+    public static final int RESULTSYNCEVERY = PropertyFileReader.getInstance().getIntProperty(EConfig.RESULTSYNCEVERY, 16);
+    public static final int RESULTSYNCMILLIS = PropertyFileReader.getInstance().getIntProperty(EConfig.RESULTSYNCMILLIS, 5000);
+    // Timeouts in seconds, 0 disables the timeout.
+    public static final int CLONETIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.CLONETIMEOUT, 0);
+    public static final int CONANTIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.CONANTIMEOUT, 0);
+    public static final int CMAKETIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.CMAKETIMEOUT, 0);
+    public static final int BUILDTIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.BUILDTIMEOUT, 0);
+    public static final int EXTRACTTIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.EXTRACTTIMEOUT, 0);
+    public static final int DISASSEMBLETIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.DISASSEMBLETIMEOUT, 0);
+    public static final int ANALYSISTIMEOUT = PropertyFileReader.getInstance().getIntProperty(EConfig.ANALYSISTIMEOUT, 0);
+    // 0 means the cores are divided between the workers.
+    public static final int BUILDJOBS = PropertyFileReader.getInstance().getIntProperty(EConfig.BUILDJOBS, 0);
+    public static final String CMAKEGENERATOR = getCMakeGenerator();
+    // Empty if ccache is disabled.
+    public static final String CCACHEDIR = getOptionalProperty(EConfig.CCACHEDIR);
+    // Empty if the git mirror cache is disabled.
+    public static final String GITMIRRORPATH = getOptionalProperty(EConfig.GITMIRRORPATH);
+    // Empty if every worker uses the conan cache of the user.
+    public static final String CONANCACHE = getOptionalProperty(EConfig.CONANCACHE);
+    public static final int PREWARMPACKAGES = PropertyFileReader.getInstance().getIntProperty(EConfig.PREWARMPACKAGES, 50);
+    public static final int LOGQUEUECAPACITY = PropertyFileReader.getInstance().getIntProperty(EConfig.LOGQUEUECAPACITY, 8192);
+    // FILE (one log file per repository), GZIP (compressed file per repository) or CONSOLE (stdout)
+    public static final String PROCESSLOGS = getProcessLogs();
+    public static final int ERRORMESSAGELIMIT = PropertyFileReader.getInstance().getIntProperty(EConfig.ERRORMESSAGELIMIT, 50);
+    // INDEX, LARGEST_FIRST or QUICK_WINS (see JobOrder)
+    public static final String JOBORDER = getJobOrder();
+    public static final int EXTRACTWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.EXTRACTWORKERS, Runtime.getRuntime().availableProcessors());
+    public static final int ANALYSISWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.ANALYSISWORKERS, 1);
+    public static final int ANALYSISBATCHSIZE = PropertyFileReader.getInstance().getIntProperty(EConfig.ANALYSISBATCHSIZE, 1);
+    // FULL or SHALLOW
+    public static final String CHECKOUTMODE = getOptionalProperty(EConfig.CHECKOUTMODE).equalsIgnoreCase("SHALLOW") ? "SHALLOW" : "FULL";
+    // TEXT (disassembled *.ll files) or BITCODE (the extracted *.bc files are analysed directly)
+    public static final String IRFORMAT = getOptionalProperty(EConfig.IRFORMAT).equalsIgnoreCase("BITCODE") ? "BITCODE" : "TEXT";
+    // REPOSITORY (every worker runs all stages of a repository) or STAGED (see StagedPipeline)
+    public static final String PIPELINEMODE = getOptionalProperty(EConfig.PIPELINEMODE).equalsIgnoreCase("STAGED") ? "STAGED" : "REPOSITORY";
+    // Worker counts of the StagedPipeline. 0 means the count is derived from the network and CPU slots.
+    public static final int FETCHWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.FETCHWORKERS, 0);
+    public static final int DEPENDENCYWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.DEPENDENCYWORKERS, 0);
+    public static final int BUILDWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.BUILDWORKERS, 0);
+    public static final int EXTRACTSTAGEWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.EXTRACTSTAGEWORKERS, 1);
+    public static final int ANALYSISSTAGEWORKERS = PropertyFileReader.getInstance().getIntProperty(EConfig.ANALYSISSTAGEWORKERS, 1);
+    public static final int STAGEQUEUECAPACITY = PropertyFileReader.getInstance().getIntProperty(EConfig.STAGEQUEUECAPACITY, 2);
+    // Emit the Java Flight Recorder events StageEvent and ProcessEvent.
+    public static final boolean JFREVENTS = getOptionalProperty(EConfig.JFREVENTS).equalsIgnoreCase("true");
+    // Record completed stages within the progress journal, skip finished repositories and resume unfinished ones.
+    public static final boolean RESUME = getOptionalProperty(EConfig.RESUME).equalsIgnoreCase("true");
+    // Claim each repository through a lease file within the shared folder, see LeaseManager.
+    public static final boolean SHARDING = getOptionalProperty(EConfig.SHARDING).equalsIgnoreCase("true");
+    public static final String NODEID = getNodeId();
+    public static final int LEASESECONDS = PropertyFileReader.getInstance().getIntProperty(EConfig.LEASESECONDS, 600);
+
+    /**
+     * @param stage The pipeline stage.
+     * @return The configured timeout of the stage in seconds, 0 if the stage has no timeout.
+     */
+    public static int getTimeout(Stage stage) {
+        switch (stage) {
+            case CLONE:
+            case SUBMODULES:
+            case RESET:
+                return CLONETIMEOUT;
+            case CONAN_INSTALL:
+                return CONANTIMEOUT;
+            case CMAKE_PREPARATION:
+                return CMAKETIMEOUT;
+            case CMAKE_BUILD:
+                return BUILDTIMEOUT;
+            case EXTRACT_BC:
+                return EXTRACTTIMEOUT;
+            case DISASSEMBLE:
+                return DISASSEMBLETIMEOUT;
+            case ANALYSIS:
+                return ANALYSISTIMEOUT;
+            default:
+                return 0;
+        }
+    }
+
+    private static String getJobOrder() {
+        String jobOrder = getOptionalProperty(EConfig.JOBORDER).toUpperCase();
+        return jobOrder.equals(JobOrder.LARGEST_FIRST) || jobOrder.equals(JobOrder.QUICK_WINS) ? jobOrder : JobOrder.INDEX;
+    }
+
+    private static String getProcessLogs() {
+        String processLogs = getOptionalProperty(EConfig.PROCESSLOGS).toUpperCase();
+        return processLogs.equals("GZIP") || processLogs.equals("CONSOLE") ? processLogs : "FILE";
+    }
+
+    private static String getOptionalProperty(EConfig config) {
+        String value = PropertyFileReader.getInstance().getProperty(config);
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * @return The configured nodeId or the host name.
+     */
+    private static String getNodeId() {
+        String nodeId = getOptionalProperty(EConfig.NODEID);
+        if (!nodeId.isEmpty())
+            return nodeId;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+
+    private static String getNodeFileName(String name) {
+        if (getOptionalProperty(EConfig.SHARDING).equalsIgnoreCase("true"))
+            return name + "-" + getNodeId() + ".json";
+        return name + ".json";
+    }
+
+    private static String getCMakeGenerator() {
+        String generator = PropertyFileReader.getInstance().getProperty(EConfig.CMAKEGENERATOR);
+        if (generator == null || generator.trim().isEmpty())
+            return "Unix Makefiles";
+        if (generator.trim().equalsIgnoreCase("Ninja"))
+            return "Ninja";
+        if (!generator.trim().equals("Unix Makefiles"))
+            System.err.println("Unsupported cmakeGenerator '" + generator + "'. Using 'Unix Makefiles'.");
+        return "Unix Makefiles";
+    }
 
 
 }
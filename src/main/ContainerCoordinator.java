@@ -1,79 +1,304 @@
 package main;
 
+import Models.AnalysisResult;
+import Models.Checkpoint;
 import Models.RMetaData;
+import Models.Stage;
+import Models.StageMetrics;
+import utils.Command;
+import utils.CompilerCacheHelper;
+import utils.ConanCacheHelper;
+import utils.ErrorLog;
 import utils.FileHelper;
+import utils.GitMirrorCache;
 import utils.JsonReader;
-import utils.JsonWriter;
+import utils.LeaseManager;
+import utils.LogContext;
+import utils.ProcessEvent;
 import utils.ProcessHelper;
+import utils.ProcessMetrics;
+import utils.ProcessOutputLog;
+import utils.ProcessOutputSink;
+import utils.ProgressJournal;
+import utils.ResultStore;
+import utils.StageEvent;
 
-import java.text.SimpleDateFormat;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
  * The ContainerCoordinator class that implements all required build steps for an automatic repository evaluation.
  * @author Daniel Braun
  */
-public class ContainerCoordinator {
-    private ProcessBuilder processBuilder;
-    private ArrayList<String> errorMessages;
-    private ArrayList<String> conanDependencies;
+public class ContainerCoordinator implements ProcessOutputSink {
+    // Repositories are cloned into a folder named after the repository, hence equally named repositories must not run at the same time.
+    // Semaphores instead of locks, since the stages of the StagedPipeline release the workspace on a different thread.
+    private static final ConcurrentHashMap<String, Semaphore> WORKSPACE_LOCKS = new ConcurrentHashMap<>();
+
+    // Synchronized, since they are filled by the process pumps and the parallel extraction jobs.
+    private ErrorLog errorMessages;
+    private List<String> conanDependencies;
+    private List<String> timedOutStages;
+    // Guarded by this. Ordered by the pipeline stages.
+    private Map<Stage, StageMetrics> stageMetrics;
+    // First process start and last process end of each stage, used as wall time of stages running their processes in parallel.
+    private Map<Stage, long[]> processSpans;
     private String localBuildStatus = "UNKNOWN";
+    private boolean dependenciesInstalled;
+    private RMetaData rMetaData;
+    private int arrayIndex;
+    private long startTimeRepository;
+    private Semaphore workspaceLock;
+    private boolean leaseHeld;
+    // Null if the process output is printed to the console.
+    private ProcessOutputLog processOutput;
+    private ArrayList<String> llFileList;
+    // The last stage completed by an earlier run, null if the repository starts from scratch.
+    private Checkpoint resumedCheckpoint;
     private Logger logger;
-    private long startTime;
-    private String systemStartTime;
+    private ResourceLimits limits;
+
+    public ContainerCoordinator(Logger logger) {
+        this(logger, ResourceLimits.unlimited());
+    }
 
-    public ContainerCoordinator(Logger logger, long startTime, String systemStartTime) {
+    public ContainerCoordinator(Logger logger, ResourceLimits limits) {
         this.logger = logger;
-        this.startTime = startTime;
-        this.systemStartTime = systemStartTime;
-        processBuilder = new ProcessBuilder();
-        errorMessages = new ArrayList<>();
-        conanDependencies = new ArrayList<>();
+        this.limits = limits;
+        errorMessages = new ErrorLog(Config.ERRORMESSAGELIMIT);
+        conanDependencies = Collections.synchronizedList(new ArrayList<>());
+        timedOutStages = Collections.synchronizedList(new ArrayList<>());
+        stageMetrics = new EnumMap<>(Stage.class);
+        processSpans = new EnumMap<>(Stage.class);
     }
 
     /**
      * Main entry function that must be called on construction to start the build pipeline.
+     * May be called repeatedly to process several repositories within the same process.
      * @param arrayIndex The index to the repository within the repositories.json file.
      */
     public void run(int arrayIndex) {
-        JsonReader.getInstance().checkArgInRange(arrayIndex);
+        if (!prepare(arrayIndex))
+            return;
+        try {
+            try {
+                fetch();
+                installDependencies();
+                build();
+                extract();
+                analyze();
+            } finally {
+                releaseWorkspace();
+            }
+            persist();
+        } finally {
+            releaseLease();
+            LogContext.clear();
+        }
+    }
 
+    /**
+     * Read the metadata of the repository and lock its workspace. Must be called before any other stage.
+     * With sharding enabled, the repository is claimed first.
+     * @param arrayIndex The index to the repository within the repositories.json file.
+     * @return False if the index is out of range, the repository can't be read or is claimed by another node and the
+     * repository is skipped.
+     */
+    boolean prepare(int arrayIndex) {
+        if (!JsonReader.getInstance().isArgInRange(arrayIndex)) {
+            System.err.println("Skipping index " + arrayIndex + ". The repositories.json maximum array size is " + JsonReader.getInstance().getRepositoryCount() + ".");
+            logger.warning("SKIPPED: INDEX OUT OF BOUNDS " + arrayIndex);
+            return false;
+        }
+        if (Config.SHARDING && !LeaseManager.getInstance().claim(arrayIndex)) {
+            System.out.println("Skipping index " + arrayIndex + ". It is processed or finished by another node.");
+            logger.info("SKIPPED: INDEX CLAIMED BY ANOTHER NODE " + arrayIndex);
+            return false;
+        }
+        resetRepositoryState();
+        this.arrayIndex = arrayIndex;
+        leaseHeld = Config.SHARDING;
+        startTimeRepository = System.nanoTime();
 
-        RMetaData rMetaData = JsonReader.getInstance().deserializeRepositoryFromJsonArray(arrayIndex);
+        // Until prepare returns true nobody else frees the lease or the workspace.
+        try {
+            rMetaData = JsonReader.getInstance().deserializeRepositoryFromJsonArray(arrayIndex);
+            if (rMetaData == null) {
+                System.err.println("Skipping index " + arrayIndex + ". The repository can't be read.");
+                logger.warning("SKIPPED: UNREADABLE REPOSITORY " + arrayIndex);
+                releaseLease();
+                return false;
+            }
+            enterStage("PREPARE");
+            // A resumed repository keeps the error lines of the earlier run.
+            boolean resumable = Config.RESUME && ProgressJournal.getInstance().getUnfinished(arrayIndex) != null;
+            errorMessages = new ErrorLog(Config.ERRORMESSAGELIMIT, FileHelper.getErrorLogFilePath(rMetaData.getId(), rMetaData.getName()),
+                    Config.PROCESSLOGS.equals("GZIP"), resumable);
 
-        logger.info("-----------------------------------");
-        logger.info("Running container pipeline at index: "+ arrayIndex + " for repository with id/owner/name: " + rMetaData.getId() + "/" + rMetaData.getOwner() + "/" + rMetaData.getName());
+            workspaceLock = WORKSPACE_LOCKS.computeIfAbsent(rMetaData.getName(), name -> new Semaphore(1));
+            workspaceLock.acquireUninterruptibly();
+            logger.info("-----------------------------------");
+            logger.info("Running container pipeline at index: "+ arrayIndex + " for repository with id/owner/name: " + rMetaData.getId() + "/" + rMetaData.getOwner() + "/" + rMetaData.getName());
+            if (Config.RESUME)
+                resumeFromJournal();
+            openProcessOutput();
+            return true;
+        } catch (RuntimeException e) {
+            releaseWorkspace();
+            releaseLease();
+            // A half prepared repository must not be persisted (see recordFailure).
+            rMetaData = null;
+            throw e;
+        }
+    }
 
+    /**
+     * Clone the repository and its submodules.
+     */
+    void fetch() {
+        enterStage("FETCH");
+        if (isCompleted(Checkpoint.FETCHED))
+            return;
         cloneRepository(rMetaData);
-        compile(rMetaData);
+        recordCheckpoint(Checkpoint.FETCHED);
+    }
 
-        if(localBuildStatus.equals("SUCCESS"))
-            runAnalysis(gatherBuildTargetsAndExtractLLVMIR(rMetaData));
+    /**
+     * Install the conan dependencies.
+     */
+    void installDependencies() {
+        enterStage("DEPENDENCIES");
+        if (isCompleted(Checkpoint.DEPENDENCIES_INSTALLED))
+            return;
+        dependenciesInstalled = installConanDependencies(rMetaData);
+        recordCheckpoint(Checkpoint.DEPENDENCIES_INSTALLED);
+    }
 
-        rMetaData.setPackageDependencies(conanDependencies);
-        rMetaData.setErrorMessage(errorMessages);
-        updateMetaData(rMetaData, arrayIndex);
+    /**
+     * Generate the build files and compile, if the dependencies were installed.
+     */
+    void build() {
+        enterStage("BUILD");
+        if (isCompleted(Checkpoint.BUILT))
+            return;
+        if (dependenciesInstalled)
+            compile(rMetaData);
+        recordCheckpoint(Checkpoint.BUILT);
+    }
 
-        Calendar calendar = Calendar.getInstance();
-        SimpleDateFormat formatter = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
-        long endTime   = System.nanoTime();
-        long duration = endTime - startTime;
+    /**
+     * Extract and disassemble the build targets, if the build succeeded.
+     */
+    void extract() {
+        enterStage("EXTRACT");
+        if (isCompleted(Checkpoint.EXTRACTED))
+            return;
+        if (localBuildStatus.equals("SUCCESS"))
+            llFileList = gatherBuildTargetsAndExtractLLVMIR(rMetaData);
+        recordCheckpoint(Checkpoint.EXTRACTED);
+    }
 
-        //logger.info("-----------------------------------");
-        logger.info("ContainerCoordinator started at: " + systemStartTime);
-        logger.info("ContainerCoordinator terminated at: " + formatter.format(calendar.getTime()));
-        logger.info("Overall execution time in seconds: " + TimeUnit.NANOSECONDS.toSeconds(duration));
-        logger.info("Overall execution time in minutes: " + (double)TimeUnit.NANOSECONDS.toSeconds(duration)/60);
-        logger.info("Overall execution time in hours: " + (double)TimeUnit.NANOSECONDS.toSeconds(duration)/3600);
-        logger.info("ContainerCoordinator finished. Shutting down");
+    /**
+     * Run the analysis tool on the extracted files.
+     */
+    void analyze() {
+        enterStage("ANALYZE");
+        if (isCompleted(Checkpoint.ANALYZED))
+            return;
+        if (llFileList != null)
+            runAnalysis(llFileList, rMetaData);
+        recordCheckpoint(Checkpoint.ANALYZED);
+    }
 
+    /**
+     * Unlock the workspace of the repository, so that equally named repositories can be processed, and close the process
+     * output of the repository, since no further processes are started. May be called repeatedly.
+     */
+    void releaseWorkspace() {
+        if (workspaceLock != null) {
+            workspaceLock.release();
+            workspaceLock = null;
+        }
+        if (processOutput != null) {
+            processOutput.close();
+            processOutput = null;
+        }
+        errorMessages.close();
+    }
+
+    /**
+     * Give up the lease of the repository if it was not finished, so that another node may claim it. May be called repeatedly.
+     */
+    void releaseLease() {
+        if (leaseHeld) {
+            LeaseManager.getInstance().release(arrayIndex);
+            leaseHeld = false;
+        }
+    }
+
+    /**
+     * Record an unexpected failure of a stage, so that the repository is persisted as failed instead of being dropped.
+     * A build that succeeded before keeps its status, the failure is listed within the error messages only.
+     * @param stage The name of the failed stage.
+     * @param e The cause of the failure.
+     * @return False if the repository can not be persisted, since its metadata was never read.
+     */
+    boolean recordFailure(String stage, RuntimeException e) {
+        if (rMetaData == null)
+            return false;
+        errorMessages.add(stage, "FAILED: " + stage + " " + e);
+        if (!localBuildStatus.equals("SUCCESS"))
+            rMetaData.setBuildStatus("FAILED");
+        return true;
+    }
+
+    /**
+     * Store the collected information within the results.json file.
+     */
+    void persist() {
+        enterStage("PERSIST");
+        applyCollectedState();
+        updateMetaData(rMetaData, arrayIndex);
+        if (Config.RESUME || Config.SHARDING) {
+            // The result must be on disk before the repository counts as finished.
+            try {
+                ResultStore.getInstance().sync();
+                if (Config.RESUME)
+                    ProgressJournal.getInstance().record(new ProgressJournal.Entry(arrayIndex, rMetaData.getLatestCommitId(), Checkpoint.PERSISTED));
+                if (Config.SHARDING)
+                    LeaseManager.getInstance().complete(arrayIndex);
+            } catch (IOException e) {
+                System.err.println("Couldn't sync the results of index " + arrayIndex + ". The repository will be processed again.");
+                System.err.println(e.getMessage());
+            }
+        }
+
+        long durationRepository = System.nanoTime() - startTimeRepository;
+        logger.info("Repository at index " + arrayIndex + " took " + TimeUnit.NANOSECONDS.toSeconds(durationRepository) + " seconds");
 
         System.out.println("PRINTING ERRORMESSAGES");
-        for(String s: errorMessages)
+        for(String s: errorMessages.getSummary())
             System.err.println(s);
         System.out.println("----------------------------------------------------");
         System.out.println("PRINTING CONAN DEPENDENCIES");
@@ -82,14 +307,190 @@ public class ContainerCoordinator {
         System.out.println("----------------------------------------------------");
     }
 
+    /**
+     * Tag the log records and process output of the current thread (and the threads it starts) with the repository and stage.
+     */
+    private void enterStage(String stage) {
+        LogContext.set(rMetaData.getId(), stage);
+    }
+
+    /**
+     * Open the file receiving the output of all processes of the repository. A resumed repository keeps the output of the earlier run.
+     * The output is printed to the console if the file can not be opened.
+     */
+    private void openProcessOutput() {
+        if (Config.PROCESSLOGS.equals("CONSOLE"))
+            return;
+        String path = FileHelper.getProcessLogFilePath(rMetaData.getId(), rMetaData.getName());
+        try {
+            processOutput = new ProcessOutputLog(path, Config.PROCESSLOGS.equals("GZIP"), resumedCheckpoint != null);
+        } catch (IOException e) {
+            System.err.println("Couldn't open the process output " + path + ". Printing it to the console.");
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Reset all state that belongs to a single repository, so that the next repository starts clean.
+     * New lists are created, since the previous ones are still referenced by the previous metadata object.
+     * The error log is created by prepare, since it depends on the repository.
+     */
+    private void resetRepositoryState() {
+        conanDependencies = Collections.synchronizedList(new ArrayList<>());
+        timedOutStages = Collections.synchronizedList(new ArrayList<>());
+        stageMetrics = new EnumMap<>(Stage.class);
+        processSpans = new EnumMap<>(Stage.class);
+        localBuildStatus = "UNKNOWN";
+        dependenciesInstalled = false;
+        rMetaData = null;
+        llFileList = null;
+        resumedCheckpoint = null;
+    }
+
+    /**
+     * Copy the information collected by the coordinator into the metadata.
+     */
+    private void applyCollectedState() {
+        rMetaData.setPackageDependencies(conanDependencies);
+        rMetaData.setErrorMessage(errorMessages.getSummary());
+        rMetaData.setErrorLines(errorMessages.getLines());
+        rMetaData.setErrorLogFile(errorMessages.getSidecarPath());
+        rMetaData.setTimedOutStages(timedOutStages);
+        rMetaData.setStageMetrics(collectStageMetrics());
+    }
+
+    private boolean isCompleted(Checkpoint checkpoint) {
+        return resumedCheckpoint != null && resumedCheckpoint.compareTo(checkpoint) >= 0;
+    }
+
+    /**
+     * Record a completed stage within the progress journal, together with everything the next stage needs.
+     * @param checkpoint The completed stage.
+     */
+    private void recordCheckpoint(Checkpoint checkpoint) {
+        if (!Config.RESUME)
+            return;
+        applyCollectedState();
+        ProgressJournal.Entry entry = new ProgressJournal.Entry(arrayIndex, rMetaData.getLatestCommitId(), checkpoint);
+        entry.setDependenciesInstalled(dependenciesInstalled);
+        entry.setLocalBuildStatus(localBuildStatus);
+        entry.setFiles(llFileList);
+        entry.setRepository(rMetaData);
+        ProgressJournal.getInstance().record(entry);
+    }
+
+    /**
+     * Continue an unfinished repository of an earlier run with the stage after its last completed one.
+     * The checkpoint is only used if the workspace still contains the results of the completed stages, otherwise
+     * the workspace is deleted and the repository starts from scratch.
+     */
+    private void resumeFromJournal() {
+        ProgressJournal.Entry entry = ProgressJournal.getInstance().getUnfinished(arrayIndex);
+        if (entry == null || entry.getRepository() == null)
+            return;
+        String workspace = Config.CONTAINERPATH + "/" + rMetaData.getName();
+        if (!isWorkspaceValid(entry, workspace)) {
+            logger.warning("DISCARDED: CHECKPOINT " + entry.getCheckpoint() + " - WORKSPACE IS INCOMPLETE");
+            FileHelper.deleteDirectory(workspace);
+            return;
+        }
+
+        resumedCheckpoint = entry.getCheckpoint();
+        rMetaData = entry.getRepository();
+        dependenciesInstalled = entry.isDependenciesInstalled();
+        localBuildStatus = entry.getLocalBuildStatus();
+        if (entry.getFiles() != null)
+            llFileList = new ArrayList<>(entry.getFiles());
+        errorMessages.restore(rMetaData.getErrorMessage(), rMetaData.getErrorLines());
+        if (rMetaData.getPackageDependencies() != null)
+            conanDependencies.addAll(rMetaData.getPackageDependencies());
+        if (rMetaData.getTimedOutStages() != null)
+            timedOutStages.addAll(rMetaData.getTimedOutStages());
+        if (rMetaData.getStageMetrics() != null) {
+            for (StageMetrics metrics : rMetaData.getStageMetrics()) {
+                for (Stage stage : Stage.values()) {
+                    if (stage.toString().equals(metrics.getStage()))
+                        stageMetrics.put(stage, metrics);
+                }
+            }
+        }
+        System.out.println("RESUMING AFTER CHECKPOINT: " + resumedCheckpoint);
+        logger.info("RESUMED: AFTER CHECKPOINT " + resumedCheckpoint);
+    }
+
+    /**
+     * @param entry The last completed stage.
+     * @param workspace Path to the workspace of the repository.
+     * @return True if the workspace is checked out at the journaled commit and contains the outputs of the completed stages.
+     */
+    private boolean isWorkspaceValid(ProgressJournal.Entry entry, String workspace) {
+        if (entry.getCommitId() == null || !entry.getCommitId().equals(rMetaData.getLatestCommitId()))
+            return false;
+        if (!entry.getCommitId().equals(readWorkspaceHead(workspace)))
+            return false;
+        if (entry.getCheckpoint().compareTo(Checkpoint.DEPENDENCIES_INSTALLED) >= 0 && entry.isDependenciesInstalled() && !FileHelper.checkFileExists(workspace + "/build"))
+            return false;
+        if (entry.getCheckpoint().compareTo(Checkpoint.BUILT) >= 0 && entry.getLocalBuildStatus().equals("SUCCESS") && !FileHelper.checkFileExists(workspace + "/buildDest"))
+            return false;
+        if (entry.getFiles() != null) {
+            for (String file : entry.getFiles()) {
+                if (!FileHelper.checkFileExists(file))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param workspace Path to the workspace of the repository.
+     * @return The commit id checked out within the workspace or null if it is no git repository.
+     */
+    private static String readWorkspaceHead(String workspace) {
+        if (!FileHelper.checkFileExists(workspace + "/.git"))
+            return null;
+        try {
+            Process process = new ProcessBuilder("git", "-C", workspace, "rev-parse", "HEAD").redirectErrorStream(true).start();
+            String head;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                head = reader.readLine();
+            }
+            return process.waitFor() == 0 && head != null ? head.trim() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
     /**
      * Cloning, init submodules and reset working tree.
      * @param rMetaData The Metadata read from the JSON-file.
      */
     private void cloneRepository(RMetaData rMetaData) {
         long startTimeCloning   = System.nanoTime();
-        processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH + " && git clone " + rMetaData.getCloneUrl() + " 2>&1");
-        int exitVal = ProcessHelper.executeProcess(processBuilder, this);
+        StageEvent cloneEvent = StageEvent.begin(Stage.CLONE, rMetaData);
+        int exitVal = -1;
+        String checkoutMode = "FULL";
+        //A clone from the mirror cache borrows the objects of the mirror and fetches only new commits, hence it is not
+        //combined with a shallow checkout. The conflicting configuration is reported at startup.
+        if (Config.CHECKOUTMODE.equals("SHALLOW") && !GitMirrorCache.isEnabled()) {
+            exitVal = shallowCheckout(rMetaData);
+            if (exitVal == 0) {
+                checkoutMode = "SHALLOW";
+            } else {
+                System.err.println("Shallow checkout failed. Falling back to a full clone.");
+                logger.warning("FAILED: SHALLOW CHECKOUT - FALLING BACK TO FULL CLONE");
+                FileHelper.deleteDirectory(Config.CONTAINERPATH + "/" + rMetaData.getName());
+            }
+        }
+        if (exitVal != 0) {
+            if (GitMirrorCache.isEnabled())
+                exitVal = cloneFromMirror(rMetaData);
+            else
+                exitVal = executeProcess(Stage.CLONE, limits.getNetworkSlots(), new Command("git", "clone", rMetaData.getCloneUrl()).directory(Config.CONTAINERPATH).redirectErrorStream());
+        }
+        rMetaData.setCheckoutMode(checkoutMode);
         if (exitVal == 0) {
             System.out.println("Cloning finished");
             logger.info("FINISHED: CLONING");
@@ -100,11 +501,26 @@ public class ContainerCoordinator {
         }
         long endTimeCloning  = System.nanoTime();
         long durationCloning = endTimeCloning - startTimeCloning;
+        recordStageMetrics(Stage.CLONE, durationCloning);
+        StageEvent.commit(cloneEvent, exitVal);
         logger.info("Cloning took " + TimeUnit.NANOSECONDS.toSeconds(durationCloning) + " seconds - Repository size: " + rMetaData.getSize());
 
         long startTimeSubmodules   = System.nanoTime();
-        processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH + "/" + rMetaData.getName() + " && git submodule update --init --recursive 2>&1");
-        int exitVal1 = ProcessHelper.executeProcess(processBuilder, this);
+        StageEvent submodulesEvent = StageEvent.begin(Stage.SUBMODULES, rMetaData);
+        if (GitMirrorCache.isEnabled())
+            updateSubmodulesFromMirror(rMetaData);
+        int exitVal1 = -1;
+        if (checkoutMode.equals("SHALLOW")) {
+            //Submodules are pinned to a commit as well, hence only that commit is fetched.
+            exitVal1 = executeProcess(Stage.SUBMODULES, limits.getNetworkSlots(), new Command("git", "submodule", "update", "--init", "--recursive", "--depth", "1")
+                    .directory(Config.CONTAINERPATH + "/" + rMetaData.getName()).redirectErrorStream());
+            if (exitVal1 != 0)
+                logger.warning("FAILED: SHALLOW SUBMODULES - FALLING BACK TO FULL SUBMODULE CLONE");
+        }
+        //Initializes all remaining and nested submodules. Submodules cloned from the mirror cache are only updated.
+        if (exitVal1 != 0)
+            exitVal1 = executeProcess(Stage.SUBMODULES, limits.getNetworkSlots(), new Command("git", "submodule", "update", "--init", "--recursive")
+                    .directory(Config.CONTAINERPATH + "/" + rMetaData.getName()).redirectErrorStream());
         if (exitVal1 == 0) {
             System.out.println("Cloning submodules finished");
             logger.info("FINISHED: CLONING SUBMODULES");
@@ -115,11 +531,13 @@ public class ContainerCoordinator {
         }
         long endTimeSubmodules  = System.nanoTime();
         long durationSubmodules = endTimeSubmodules - startTimeSubmodules;
+        recordStageMetrics(Stage.SUBMODULES, durationSubmodules);
+        StageEvent.commit(submodulesEvent, exitVal1);
         logger.info("Cloning submodules took " + TimeUnit.NANOSECONDS.toSeconds(durationSubmodules) + " seconds");
 
         long startTimeReset   = System.nanoTime();
-        processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH + "/" +rMetaData.getName()+" && git reset --hard " + rMetaData.getLatestCommitId());
-        int exitVal2 = ProcessHelper.executeProcess(processBuilder, this);
+        StageEvent resetEvent = StageEvent.begin(Stage.RESET, rMetaData);
+        int exitVal2 = executeProcess(Stage.RESET, new Command("git", "reset", "--hard", rMetaData.getLatestCommitId()).directory(Config.CONTAINERPATH + "/" + rMetaData.getName()));
         if (exitVal2== 0) {
             System.out.println("Reset current working tree to commit id: " +rMetaData.getLatestCommitId());
             logger.info("FINISHED: RESET WORKING TREE");
@@ -130,105 +548,248 @@ public class ContainerCoordinator {
         }
         long endTimeReset = System.nanoTime();
         long durationReset = endTimeReset - startTimeReset;
+        recordStageMetrics(Stage.RESET, durationReset);
+        StageEvent.commit(resetEvent, exitVal2);
         logger.info("Resetting working tree took " + TimeUnit.NANOSECONDS.toSeconds(durationReset) + " seconds");
 
+        rMetaData.setWorkspaceBytes(FileHelper.getDirectorySize(Config.CONTAINERPATH + "/" + rMetaData.getName()));
+
         System.out.println("----------------------------------------------------");
     }
 
     /**
-     * Install dependencies, prepare build folders, generate build files and compile.
+     * Fetch only the commit to build, without any history. Requires the server to allow fetching a commit by its id,
+     * which e.g. GitHub does.
+     * @param rMetaData The Metadata read from the JSON-file.
+     * @return Returns an int indicating the exit code.
+     */
+    private int shallowCheckout(RMetaData rMetaData) {
+        String workspace = Config.CONTAINERPATH + "/" + rMetaData.getName();
+        if (!new File(workspace).mkdir()) {
+            System.err.println("Couldn't create the folder " + workspace);
+            return 1;
+        }
+        int exitVal = executeProcess(Stage.CLONE, new Command("git", "init", "-q").directory(workspace));
+        if (exitVal == 0)
+            exitVal = executeProcess(Stage.CLONE, new Command("git", "remote", "add", "origin", rMetaData.getCloneUrl()).directory(workspace));
+        if (exitVal == 0)
+            exitVal = executeProcess(Stage.CLONE, limits.getNetworkSlots(), new Command("git", "fetch", "--depth", "1", "origin", rMetaData.getLatestCommitId())
+                    .directory(workspace).redirectErrorStream());
+        if (exitVal == 0)
+            exitVal = executeProcess(Stage.CLONE, new Command("git", "checkout", "-q", "FETCH_HEAD").directory(workspace).redirectErrorStream());
+        return exitVal;
+    }
+
+    /**
+     * Clone the repository from its mirror within the git mirror cache. The mirror is created or updated first.
+     * The workspace borrows all objects from the mirror (--shared), hence nothing is copied.
+     * @param rMetaData The Metadata read from the JSON-file.
+     * @return Returns an int indicating the exit code.
+     */
+    private int cloneFromMirror(RMetaData rMetaData) {
+        String mirror = GitMirrorCache.getRepositoryMirror(rMetaData.getId());
+        int exitVal = updateMirror(Stage.CLONE, mirror, rMetaData.getCloneUrl());
+        if (exitVal != 0)
+            return exitVal;
+        exitVal = executeProcess(Stage.CLONE, new Command("git", "clone", "--shared", mirror, rMetaData.getName()).directory(Config.CONTAINERPATH).redirectErrorStream());
+        if (exitVal != 0)
+            return exitVal;
+        return executeProcess(Stage.CLONE, new Command("git", "remote", "set-url", "origin", rMetaData.getCloneUrl()).directory(Config.CONTAINERPATH + "/" + rMetaData.getName()));
+    }
+
+    /**
+     * Initialize the top level submodules with the help of their mirrors within the git mirror cache.
+     * Failures are not fatal, the submodules are cloned the usual way afterwards.
+     * @param rMetaData The Metadata read from the JSON-file.
+     */
+    private void updateSubmodulesFromMirror(RMetaData rMetaData) {
+        String workspace = Config.CONTAINERPATH + "/" + rMetaData.getName();
+        for (Map.Entry<String, String> submodule : GitMirrorCache.getSubmodules(workspace).entrySet()) {
+            String mirror = GitMirrorCache.getSubmoduleMirror(submodule.getValue());
+            if (updateMirror(Stage.SUBMODULES, mirror, submodule.getValue()) == 0)
+                executeProcess(Stage.SUBMODULES, new Command("git", "submodule", "update", "--init", "--reference", mirror, "--", submodule.getKey()).directory(workspace).redirectErrorStream());
+        }
+    }
+
+    /**
+     * Create a mirror or fetch the latest changes into an existing one.
+     * Only branches and tags are mirrored. A "git clone --mirror" would fetch all refs of the remote as well, e.g. the
+     * refs/pull/* of GitHub, which multiply the size of popular repositories.
+     * New mirrors are cloned into a temporary folder unique to this call first, so that an aborted clone never leaves a
+     * broken mirror behind and coordinators sharing the cache do not clone into the same folder.
+     * @param stage The stage the mirror belongs to.
+     * @param mirror Path to the mirror.
+     * @param url The url of the remote repository.
+     * @return Returns an int indicating the exit code.
+     */
+    private int updateMirror(Stage stage, String mirror, String url) {
+        ReentrantLock mirrorLock = GitMirrorCache.lock(mirror);
+        try {
+            if (GitMirrorCache.mirrorExists(mirror)) {
+                logger.info("Updating git mirror " + mirror);
+                return executeProcess(stage, limits.getNetworkSlots(), new Command("git", "-C", mirror, "fetch", "--prune", "origin")
+                        .arguments(GitMirrorCache.MIRROR_REFSPECS).redirectErrorStream());
+            }
+            logger.info("Creating git mirror " + mirror);
+            String temporaryMirror = mirror + ".tmp-" + UUID.randomUUID();
+            int exitVal = executeProcess(stage, limits.getNetworkSlots(), new Command("git", "clone", "--bare", url, temporaryMirror).redirectErrorStream());
+            //A bare clone has no fetch refspec, hence the later updates are told what to fetch.
+            if (exitVal == 0)
+                exitVal = executeProcess(stage, new Command("git", "-C", temporaryMirror, "config", "remote.origin.fetch", GitMirrorCache.MIRROR_REFSPECS[0]));
+            if (exitVal == 0)
+                exitVal = executeProcess(stage, new Command("git", "-C", temporaryMirror, "config", "--add", "remote.origin.fetch", GitMirrorCache.MIRROR_REFSPECS[1]));
+            //Automatic garbage collection is disabled, since the workspaces borrow objects from the mirror.
+            if (exitVal == 0)
+                exitVal = executeProcess(stage, new Command("git", "-C", temporaryMirror, "config", "gc.auto", "0"));
+            if (exitVal != 0) {
+                FileHelper.deleteDirectory(temporaryMirror);
+                return exitVal;
+            }
+            try {
+                Files.move(Paths.get(temporaryMirror), Paths.get(mirror), StandardCopyOption.ATOMIC_MOVE);
+                return 0;
+            } catch (IOException e) {
+                FileHelper.deleteDirectory(temporaryMirror);
+                //Another coordinator sharing the cache created the mirror in the meantime.
+                if (GitMirrorCache.mirrorExists(mirror))
+                    return 0;
+                System.err.println("Couldn't move the git mirror to " + mirror);
+                System.err.println(e.getMessage());
+                return 1;
+            }
+        } finally {
+            mirrorLock.unlock();
+        }
+    }
+
+    /**
+     * Install the dependencies into a fresh build folder.
      * @param rMetaData The metadata read from the json file.
+     * @return True if the dependencies were installed.
      */
-    private void compile(RMetaData rMetaData) {
+    private boolean installConanDependencies(RMetaData rMetaData) {
 
         System.out.println("RUNNING: CONAN INSTALL");
         //Delete existing build folder, making sure we are building everything from scratch.
         long startTimeConan   = System.nanoTime();
-        processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH + "/" + rMetaData.getName() + " && rm -f -r build && mkdir build && cd build && yes y | conan install .. -pr=clang --build=missing");
-        int exitVal1 = ProcessHelper.executeProcess(processBuilder, this);
+        StageEvent conanEvent = StageEvent.begin(Stage.CONAN_INSTALL, rMetaData);
+        String buildFolder = Config.CONTAINERPATH + "/" + rMetaData.getName() + "/build";
+        int exitVal1 = 1;
+        if (FileHelper.deleteDirectory(buildFolder) && new File(buildFolder).mkdir())
+            exitVal1 = executeProcess(Stage.CONAN_INSTALL, limits.getNetworkSlots(), new Command("conan", "install", "..", "-pr=clang", "--build=missing")
+                    .directory(buildFolder).environment(ConanCacheHelper.getEnvironment()).answerPrompts("y"));
         if (exitVal1 == 0) {
             System.out.println("FINISHED: CONAN INSTALL");
             logger.info("FINISHED: CONAN INSTALL");
         } else {
             System.err.println("FAILED: CONAN INSTALL");
-            rMetaData.setBuildStatus("FAILED");
+            rMetaData.setBuildStatus(getFailedBuildStatus(exitVal1));
             errorMessages.add("FAILED: CONAN INSTALL");
             logger.severe("FAILED: CONAN INSTALL");
         }
         long endTimeConan = System.nanoTime();
         long durationConan = endTimeConan - startTimeConan;
+        recordStageMetrics(Stage.CONAN_INSTALL, durationConan);
+        StageEvent.commit(conanEvent, exitVal1);
         logger.info("Installing dependencies took " + TimeUnit.NANOSECONDS.toSeconds(durationConan) + " seconds");
 
         System.out.println("----------------------------------------------------");
+        return exitVal1 == 0;
+    }
+
+    /**
+     * Prepare build folders, generate build files and compile.
+     * @param rMetaData The metadata read from the json file.
+     */
+    private void compile(RMetaData rMetaData) {
 
         long startTimeFolderPrep   = System.nanoTime();
-        if (exitVal1 == 0) {
-            System.out.println("RUNNING: FOLDER PREPARATION");
-            processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH +  "/" + rMetaData.getName() + " && mkdir buildDest && cd buildDest && mkdir exe && mkdir lib && mkdir ar");
-            int exitVal2 = ProcessHelper.executeProcess(processBuilder, this);
-            if (exitVal2 == 0) {
-                System.out.println("FINISHED: FOLDER PREPARATION");
-                logger.info("FINISHED: FOLDER PREPARATION");
-            } else {
-                System.err.println("FAILED: FOLDER PREPARATION");
-                rMetaData.setBuildStatus("FAILED");
-                errorMessages.add("FAILED: FOLDER PREPARATION");
-                logger.severe("FAILED: FOLDER PREPARATION");
-            }
-            long endTimeFolderPrep = System.nanoTime();
-            long durationFolderPrep = endTimeFolderPrep - startTimeFolderPrep;
-            logger.info("Build folder preparation took " + TimeUnit.NANOSECONDS.toSeconds(durationFolderPrep) + " seconds");
+        StageEvent folderPrepEvent = StageEvent.begin(Stage.FOLDER_PREPARATION, rMetaData);
+        System.out.println("RUNNING: FOLDER PREPARATION");
+        int exitVal2 = executeProcess(Stage.FOLDER_PREPARATION, new Command("mkdir", "buildDest", "buildDest/exe", "buildDest/lib", "buildDest/ar")
+                .directory(Config.CONTAINERPATH + "/" + rMetaData.getName()));
+        if (exitVal2 == 0) {
+            System.out.println("FINISHED: FOLDER PREPARATION");
+            logger.info("FINISHED: FOLDER PREPARATION");
+        } else {
+            System.err.println("FAILED: FOLDER PREPARATION");
+            rMetaData.setBuildStatus("FAILED");
+            errorMessages.add("FAILED: FOLDER PREPARATION");
+            logger.severe("FAILED: FOLDER PREPARATION");
+        }
+        long endTimeFolderPrep = System.nanoTime();
+        long durationFolderPrep = endTimeFolderPrep - startTimeFolderPrep;
+        recordStageMetrics(Stage.FOLDER_PREPARATION, durationFolderPrep);
+        StageEvent.commit(folderPrepEvent, exitVal2);
+        logger.info("Build folder preparation took " + TimeUnit.NANOSECONDS.toSeconds(durationFolderPrep) + " seconds");
 
-            System.out.println("----------------------------------------------------");
+        System.out.println("----------------------------------------------------");
+
+        System.out.println("RUNNING: CMAKE PREPARATION");
+
+        long startTimeCMakePrep   = System.nanoTime();
+        StageEvent cmakePrepEvent = StageEvent.begin(Stage.CMAKE_PREPARATION, rMetaData);
+        int exitVal3 = executeProcess(Stage.CMAKE_PREPARATION, limits.getCpuSlots(), new Command("cmake", "-G", Config.CMAKEGENERATOR, "-DCMAKE_BUILD_TYPE=Release")
+                .arguments(CompilerCacheHelper.getCMakeArguments())
+                .arguments("-DCMAKE_RUNTIME_OUTPUT_DIRECTORY=" + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/exe",
+                        "-DCMAKE_LIBRARY_OUTPUT_DIRECTORY=" + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/lib",
+                        "-DCMAKE_ARCHIVE_OUTPUT_DIRECTORY=" + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/ar", "..")
+                .directory(Config.CONTAINERPATH + "/" + rMetaData.getName() + "/build")
+                .environment(getCompilerEnvironment()).environment(CompilerCacheHelper.getEnvironment()));
+        if (exitVal3 == 0) {
+            System.out.println("FINISHED: CMAKE PREPARATION");
+            logger.info("FINISHED: CMAKE PREPARATION");
+        } else {
+            System.err.println("FAILED: CMAKE PREPARATION");
+            rMetaData.setBuildStatus(getFailedBuildStatus(exitVal3));
+            errorMessages.add("FAILED: CMAKE PREPARATION");
+            logger.severe("FAILED: CMAKE PREPARATION");
+        }
+        long endTimeCMakePrep = System.nanoTime();
+        long durationCMakePrep = endTimeCMakePrep - startTimeCMakePrep;
+        recordStageMetrics(Stage.CMAKE_PREPARATION, durationCMakePrep);
+        StageEvent.commit(cmakePrepEvent, exitVal3);
+        logger.info("CMake preparation took " + TimeUnit.NANOSECONDS.toSeconds(durationCMakePrep) + " seconds");
+
+        System.out.println("----------------------------------------------------");
+        if(exitVal3 == 0) {
+            System.out.println("RUNNING: CMAKE BUILD");
 
-            System.out.println("RUNNING: CMAKE PREPARATION");
-
-            long startTimeCMakePrep   = System.nanoTime();
-            processBuilder.command("bash", "-c", "export LLVM_COMPILER=clang && export CC=wllvm && export CXX=wllvm++ " +
-                    "&& cd " + Config.CONTAINERPATH + "/" + rMetaData.getName() + "/build " +
-                    "&& cmake -G \"Unix Makefiles\" -DCMAKE_BUILD_TYPE=Release" +
-                    " -DCMAKE_RUNTIME_OUTPUT_DIRECTORY=" + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/exe " +
-                    "-DCMAKE_LIBRARY_OUTPUT_DIRECTORY=" + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/lib " +
-                    "-DCMAKE_ARCHIVE_OUTPUT_DIRECTORY=" + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/ar ..");
-            int exitVal3 = ProcessHelper.executeProcess(processBuilder, this);
-            if (exitVal3 == 0) {
-                System.out.println("FINISHED: CMAKE PREPARATION");
-                logger.info("FINISHED: CMAKE PREPARATION");
+            long startTimeCMakeBuild = System.nanoTime();
+            StageEvent cmakeBuildEvent = StageEvent.begin(Stage.CMAKE_BUILD, rMetaData);
+            //NOTE: the environment variables must be set again for each subprocess, they are not inherited from the cmake preparation.
+            //The build occupies one CPU slot per parallel job. The arguments after "--" are passed to make/ninja.
+            int buildJobs = limits.getBuildJobs();
+            int exitVal4 = executeProcess(Stage.CMAKE_BUILD, limits.getCpuSlots(), buildJobs, new Command("cmake", "--build", ".", "--", "-j", Integer.toString(buildJobs))
+                    .directory(Config.CONTAINERPATH + "/" + rMetaData.getName() + "/build")
+                    .environment(getCompilerEnvironment()).environment(CompilerCacheHelper.getBuildEnvironment(Config.CONTAINERPATH + "/" + rMetaData.getName())));
+            if (exitVal4 == 0) {
+                System.out.println("FINISHED: CMAKE BUILD");
+                logger.info("FINISHED: CMAKE BUILD");
+                rMetaData.setBuildStatus("SUCCESS");
+                localBuildStatus = "SUCCESS";
             } else {
-                System.err.println("FAILED: CMAKE PREPARATION");
-                rMetaData.setBuildStatus("FAILED");
-                errorMessages.add("FAILED: CMAKE PREPARATION");
-                logger.severe("FAILED: CMAKE PREPARATION");
+                System.err.println("FAILED: CMAKE BUILD");
+                rMetaData.setBuildStatus(getFailedBuildStatus(exitVal4));
+                errorMessages.add("FAILED: CMAKE BUILD");
+                logger.severe("FAILED: CMAKE BUILD");
             }
-            long endTimeCMakePrep = System.nanoTime();
-            long durationCMakePrep = endTimeCMakePrep - startTimeCMakePrep;
-            logger.info("CMake preparation took " + TimeUnit.NANOSECONDS.toSeconds(durationCMakePrep) + " seconds");
+            long endTimeCMakeBuild = System.nanoTime();
+            long durationCMakeBuild = endTimeCMakeBuild - startTimeCMakeBuild;
+            recordStageMetrics(Stage.CMAKE_BUILD, durationCMakeBuild);
+            StageEvent.commit(cmakeBuildEvent, exitVal4);
+            logger.info("CMake build took " + TimeUnit.NANOSECONDS.toSeconds(durationCMakeBuild) + " seconds using " + buildJobs + " parallel jobs");
 
-            System.out.println("----------------------------------------------------");
-            if(exitVal3 == 0) {
-                System.out.println("RUNNING: CMAKE BUILD");
-
-                long startTimeCMakeBuild = System.nanoTime();
-                //NOTE: the environment variables must be set again for each subprocess. Any environment variable set is "lost" again when the subprocess exits!
-                processBuilder.command("bash", "-c", "export LLVM_COMPILER=clang && export CC=wllvm && export CXX=wllvm++ && cd " + Config.CONTAINERPATH + "/" + rMetaData.getName() + "/build && cmake --build .");
-                int exitVal4 = ProcessHelper.executeProcess(processBuilder, this);
-                if (exitVal4 == 0) {
-                    System.out.println("FINISHED: CMAKE BUILD");
-                    logger.info("FINISHED: CMAKE BUILD");
-                    rMetaData.setBuildStatus("SUCCESS");
-                    localBuildStatus = "SUCCESS";
-                } else {
-                    System.err.println("FAILED: CMAKE BUILD");
-                    rMetaData.setBuildStatus("FAILED");
-                    errorMessages.add("FAILED: CMAKE BUILD");
-                    logger.severe("FAILED: CMAKE BUILD");
+            if (CompilerCacheHelper.isEnabled()) {
+                int[] cacheStatistics = CompilerCacheHelper.readStatistics(Config.CONTAINERPATH + "/" + rMetaData.getName());
+                if (cacheStatistics != null) {
+                    rMetaData.setCcacheHits(cacheStatistics[0]);
+                    rMetaData.setCcacheMisses(cacheStatistics[1]);
+                    logger.info("ccache: " + cacheStatistics[0] + " hits " + cacheStatistics[1] + " misses");
                 }
-                long endTimeCMakeBuild = System.nanoTime();
-                long durationCMakeBuild = endTimeCMakeBuild - startTimeCMakeBuild;
-                logger.info("CMake build took " + TimeUnit.NANOSECONDS.toSeconds(durationCMakeBuild) + " seconds");
-
-                System.out.println("----------------------------------------------------");
             }
+
+            System.out.println("----------------------------------------------------");
         }
     }
 
@@ -259,20 +820,37 @@ public class ContainerCoordinator {
         rMetaData.setExecutables(lsExe.size());
         rMetaData.setLibraries(lsLib.size());
         rMetaData.setArchives(lsAr.size());
-        for(String s : lsExe) {
-            if(extractBC("EXE", s, rMetaData) == 0)
-                disassambleToll(llFilePathList, s);
-        }
-        for(String s : lsLib) {
-            if(extractBC("LIB", s, rMetaData) == 0)
-                disassambleToll(llFilePathList, s);
-        }
-        for(String s : lsAr) {
-            if(extractBC("AR", s, rMetaData) == 0)
-                disassambleToll(llFilePathList, s);
+
+        //Each build target is extracted and disassembled independently. The futures are collected in submission order,
+        //so that the list of LLVM IR files does not depend on which job finishes first.
+        List<Future<String>> llFileFutures = new ArrayList<>();
+        int targets = lsExe.size() + lsLib.size() + lsAr.size();
+        ExecutorService extractExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(Config.EXTRACTWORKERS, targets)));
+        for(String s : lsExe)
+            llFileFutures.add(extractExecutor.submit(() -> extractAndDisassemble("EXE", s, rMetaData)));
+        for(String s : lsLib)
+            llFileFutures.add(extractExecutor.submit(() -> extractAndDisassemble("LIB", s, rMetaData)));
+        for(String s : lsAr)
+            llFileFutures.add(extractExecutor.submit(() -> extractAndDisassemble("AR", s, rMetaData)));
+        extractExecutor.shutdown();
+
+        for(Future<String> llFileFuture : llFileFutures) {
+            try {
+                String llFile = llFileFuture.get();
+                if(llFile != null)
+                    llFilePathList.add(llFile);
+            } catch (InterruptedException e) {
+                extractExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("FAILED: EXTRACT LLVM IR " + e.getCause());
+                errorMessages.add("FAILED: EXTRACT LLVM IR " + e.getCause());
+            }
         }
 
-        System.out.println("LISTING ALL GENERATED .ll FILES");
+        rMetaData.setIrFiles(llFilePathList.size());
+        System.out.println("LISTING ALL GENERATED " + (Config.IRFORMAT.equals("BITCODE") ? ".bc" : ".ll") + " FILES");
         for(String ll : llFilePathList) {
             System.out.println(ll);
         }
@@ -284,6 +862,22 @@ public class ContainerCoordinator {
         return llFilePathList;
     }
 
+    /**
+     * Extract the LLVM bitcode file from a build target and disassemble it into LLVM IR.
+     * The disassembly is skipped if the analysis runs directly on the bitcode (Config.IRFORMAT is BITCODE).
+     * @param target The build target, either exe, lib or ar.
+     * @param fileName The path and filename to the build target file.
+     * @param rMetaData The metadata read from the json file.
+     * @return The path to the file passed to the analysis (*.ll or *.bc) or null if one of both steps failed.
+     */
+    private String extractAndDisassemble(String target, String fileName, RMetaData rMetaData) {
+        if(extractBC(target, fileName, rMetaData) != 0)
+            return null;
+        if(Config.IRFORMAT.equals("BITCODE"))
+            return fileName + ".bc";
+        return disassambleToll(fileName);
+    }
+
     /**
      * Extract the LLVM bitcode files from the build targets.
      * @param target The build target, either exe, lib or ar.
@@ -292,28 +886,29 @@ public class ContainerCoordinator {
      * @return Returns an int indicating the exit code.
      */
     private int extractBC(String target, String fileName, RMetaData rMetaData) {
+        StageEvent extractEvent = StageEvent.begin(Stage.EXTRACT_BC, rMetaData);
         String succMsg = "";
         String errMsg = "";
         int exitVal = 1;
         switch(target) {
             case "EXE":
                 System.out.println("EXTRACTING LLVM BITCODE (*.bc) FILE FROM EXECUTABLE: "+ fileName);
-                processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/exe/ && extract-bc --linker llvm-link-8 " + fileName);
-                exitVal = ProcessHelper.executeProcess(processBuilder, this);
+                exitVal = executeProcess(Stage.EXTRACT_BC, limits.getCpuSlots(), new Command("extract-bc", "--linker", "llvm-link-8", fileName)
+                        .directory(Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/exe"));
                 succMsg = "Writing output to: " + fileName + ".bc";
                 errMsg  = "FAILED: EXTRACT LLVM BITCODE";
                 break;
             case "LIB":
                 System.out.println("EXTRACTING LLVM BITCODE (*.bc) FILE FROM LIBRARY: "+ fileName);
-                processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/lib/ && extract-bc --linker llvm-link-8 " + fileName);
-                exitVal = ProcessHelper.executeProcess(processBuilder, this);
+                exitVal = executeProcess(Stage.EXTRACT_BC, limits.getCpuSlots(), new Command("extract-bc", "--linker", "llvm-link-8", fileName)
+                        .directory(Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/lib"));
                 succMsg = "Writing output to: " + fileName + ".bc";
                 errMsg  = "FAILED: EXTRACT LLVM BITCODE";
                 break;
             case "AR":
                 System.out.println("EXTRACTING LLVM BITCODE MODULE (*a.bc) FILE FROM ARCHIVE: "+ fileName);
-                processBuilder.command("bash", "-c", "cd " + Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/ar/ && extract-bc -b --archiver llvm-ar-8 --linker llvm-link-8 " + fileName + " 2>&1");
-                exitVal = ProcessHelper.executeProcess(processBuilder, this);
+                exitVal = executeProcess(Stage.EXTRACT_BC, limits.getCpuSlots(), new Command("extract-bc", "-b", "--archiver", "llvm-ar-8", "--linker", "llvm-link-8", fileName)
+                        .directory(Config.CONTAINERPATH +  "/" + rMetaData.getName() + "/buildDest/ar").redirectErrorStream());
                 succMsg = "Writing output to: " + fileName + ".bc";
                 errMsg  = "FAILED: EXTRACT LLVM BITCODE";
                 break;
@@ -331,78 +926,295 @@ public class ContainerCoordinator {
             System.err.println(errMsg);
         }
         System.out.println("----------------------------------------------------");
+        StageEvent.commit(extractEvent, exitVal);
         return exitVal;
     }
 
     /**
-     * Disassembling all LLVM bitcode files into LLVM IR.
-     * @param llFileList ArrayList that stores the paths to the generated LLVM IR files.
+     * Disassembling a LLVM bitcode file into LLVM IR.
      * @param fileName Path to the LLVM bitcode that gets disassembled.
-     * @return Returns an int indicating the exit code of the llvm-dis tool.
+     * @return Returns the path to the generated LLVM IR file or null if the llvm-dis tool failed.
      */
-    private int disassambleToll(ArrayList<String> llFileList, String fileName){
+    private String disassambleToll(String fileName){
         String pathTollFile = "";
         int exitVal = 1;
         System.out.println("DISASSEMBLING " + fileName + ".bc FILE INTO LLVM IR (*.ll)");
-        processBuilder.command("bash", "-c", "llvm-dis-8 " + fileName + ".bc");
-        exitVal = ProcessHelper.executeProcess(processBuilder, this);
+        StageEvent disassembleEvent = StageEvent.begin(Stage.DISASSEMBLE, rMetaData);
+        exitVal = executeProcess(Stage.DISASSEMBLE, limits.getCpuSlots(), new Command("llvm-dis-8", fileName + ".bc"));
+        StageEvent.commit(disassembleEvent, exitVal);
         pathTollFile = fileName + ".ll";
 
+        System.out.println("----------------------------------------------------");
         if (exitVal == 0) {
             System.out.println("Writing output to: " + fileName + ".ll");
-            llFileList.add(pathTollFile);
-        } else {
-            System.err.println("FAILED: LLVM IR DISASSEMBLE");
+            return pathTollFile;
         }
-        System.out.println("----------------------------------------------------");
-        return exitVal;
+        System.err.println("FAILED: LLVM IR DISASSEMBLE");
+        return null;
     }
 
     /**
      * Running the specified analysis tool on the list of LLVM IR files.
+     * The files are split into batches of Config.ANALYSISBATCHSIZE files, each batch is passed to a single invocation of the tool.
+     * Up to Config.ANALYSISWORKERS batches are analysed at the same time.
      * @param llFileList List of paths to the LLVM IR files.
+     * @param rMetaData The metadata the results are stored in.
      */
-    private void runAnalysis(ArrayList<String> llFileList) {
+    private void runAnalysis(ArrayList<String> llFileList, RMetaData rMetaData) {
         long startTimeAnalysis = System.nanoTime();
+        StageEvent analysisEvent = StageEvent.begin(Stage.ANALYSIS, rMetaData);
         System.out.println("RUNNING ANALYSIS");
-        for(String llFile: llFileList) {
-            processBuilder.command("bash", "-c", "./"+ Config.ANALYSISTOOL + " ./.."+ llFile + " ./.." + Config.CONTAINERPATH);
-            int exitVal = ProcessHelper.executeProcess(processBuilder, this);
+
+        int batchSize = Math.max(1, Config.ANALYSISBATCHSIZE);
+        int batches = (llFileList.size() + batchSize - 1) / batchSize;
+        ExecutorService analysisExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(Config.ANALYSISWORKERS, batches)));
+        List<Future<List<AnalysisResult>>> batchFutures = new ArrayList<>();
+        for(int i = 0; i < llFileList.size(); i += batchSize) {
+            List<String> batch = llFileList.subList(i, Math.min(i + batchSize, llFileList.size()));
+            batchFutures.add(analysisExecutor.submit(() -> analyseBatch(batch)));
+        }
+        analysisExecutor.shutdown();
+
+        List<AnalysisResult> analysisResults = new ArrayList<>();
+        for(Future<List<AnalysisResult>> batchFuture : batchFutures) {
+            try {
+                analysisResults.addAll(batchFuture.get());
+            } catch (InterruptedException e) {
+                analysisExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("FAILED: ANALYSIS " + e.getCause());
+                errorMessages.add("FAILED: ANALYSIS " + e.getCause());
+            }
+        }
+        rMetaData.setAnalysisResults(analysisResults);
+        int failedExitVal = 0;
+        for(AnalysisResult analysisResult : analysisResults) {
+            if(analysisResult.getExitCode() != 0)
+                failedExitVal = analysisResult.getExitCode();
+        }
+
+        long endTimeAnalysis = System.nanoTime();
+        long durationAnalysis = endTimeAnalysis - startTimeAnalysis;
+        recordStageMetrics(Stage.ANALYSIS, durationAnalysis);
+        StageEvent.commit(analysisEvent, failedExitVal);
+        logger.info("Analysis of all LLVM IR files took " + TimeUnit.NANOSECONDS.toSeconds(durationAnalysis) + " seconds");
+
+    }
+
+    /**
+     * Run the analysis tool once for all files of a batch.
+     * The tool is called with all LLVM IR files followed by the output path. If the invocation fails, the exit code does not
+     * tell which file caused it, hence each file of the batch is analysed again on its own.
+     * @param llFiles The LLVM IR files of the batch.
+     * @return One result per file. The files of a successful batch share the time of the invocation.
+     */
+    private List<AnalysisResult> analyseBatch(List<String> llFiles) {
+        Command command = new Command("./" + Config.ANALYSISTOOL);
+        for(String llFile : llFiles)
+            command.arguments("./.." + llFile);
+        command.arguments("./.." + Config.CONTAINERPATH);
+
+        long startTimeBatch = System.nanoTime();
+        int exitVal = executeProcess(Stage.ANALYSIS, limits.getCpuSlots(), command);
+        long durationBatch = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeBatch);
+
+        List<AnalysisResult> results = new ArrayList<>();
+        if (exitVal != 0 && llFiles.size() > 1) {
+            logger.warning("FAILED: ANALYSIS BATCH OF " + llFiles.size() + " FILES - ANALYSING THEM ONE BY ONE");
+            for(String llFile : llFiles)
+                results.addAll(analyseBatch(Collections.singletonList(llFile)));
+            return results;
+        }
+        for(String llFile : llFiles) {
             if (exitVal == 0) {
                 System.out.println("ANALYSIS SUCCESS FOR: " + llFile);
             } else {
                 System.err.println("ANALYSIS FAILED FOR: " + llFile);
             }
+            results.add(new AnalysisResult(llFile, exitVal, durationBatch));
         }
-        long endTimeAnalysis = System.nanoTime();
-        long durationAnalysis = endTimeAnalysis - startTimeAnalysis;
-        logger.info("Analysis of all LLVM IR files took " + TimeUnit.NANOSECONDS.toSeconds(durationAnalysis) + " seconds");
+        return results;
+    }
+
+    /**
+     * Store the duration of a stage within the metadata.
+     * @param stage The finished stage.
+     * @param durationNanos The wall time of the stage in nanoseconds.
+     */
+    private synchronized void recordStageMetrics(Stage stage, long durationNanos) {
+        getStageMetrics(stage).setWallTimeMillis(TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    /**
+     * Add the resource usage of a finished process to the metrics of its stage.
+     * The CPU times of all processes of a stage are summed up, the peak RSS is the largest one of a single process tree.
+     * @param stage The stage the process belongs to.
+     * @param processMetrics The measurements of the process.
+     * @param exitVal The exit code of the process.
+     */
+    private synchronized void recordProcessMetrics(Stage stage, ProcessMetrics processMetrics, int exitVal) {
+        StageMetrics metrics = getStageMetrics(stage);
+        metrics.setProcesses(metrics.getProcesses() + 1);
+        metrics.setCpuTimeMillis(metrics.getCpuTimeMillis() + processMetrics.getCpuTimeMillis());
+        metrics.setPeakRssKB(Math.max(metrics.getPeakRssKB(), processMetrics.getPeakRssKB()));
+        if (exitVal != 0)
+            metrics.setExitCode(exitVal);
+
+        // A process that failed to start was never sampled and has no span.
+        if (processMetrics.getStartNanos() == 0)
+            return;
+        long[] span = processSpans.computeIfAbsent(stage, s -> new long[]{processMetrics.getStartNanos(), processMetrics.getEndNanos()});
+        span[0] = Math.min(span[0], processMetrics.getStartNanos());
+        span[1] = Math.max(span[1], processMetrics.getEndNanos());
+    }
+
+    private StageMetrics getStageMetrics(Stage stage) {
+        return stageMetrics.computeIfAbsent(stage, s -> {
+            StageMetrics metrics = new StageMetrics(s.toString(), 0);
+            metrics.setPeakRssKB(-1);
+            return metrics;
+        });
+    }
+
+    /**
+     * @return The metrics of all stages that ran for the current repository, in pipeline order. Stages without a measured
+     * wall time (e.g. the parallel extraction) get the time from their first process start to their last process end.
+     */
+    private synchronized List<StageMetrics> collectStageMetrics() {
+        List<StageMetrics> metricsList = new ArrayList<>();
+        for (Map.Entry<Stage, StageMetrics> entry : stageMetrics.entrySet()) {
+            long[] span = processSpans.get(entry.getKey());
+            if (entry.getValue().getWallTimeMillis() == 0 && span != null)
+                entry.getValue().setWallTimeMillis(TimeUnit.NANOSECONDS.toMillis(span[1] - span[0]));
+            metricsList.add(entry.getValue());
+        }
+        return metricsList;
+    }
+
+    /**
+     * Execute an external command without occupying any of the shared resource slots.
+     * @param stage The pipeline stage the command belongs to, used to look up its timeout.
+     * @param command The command, its working directory and environment.
+     * @return Returns an int indicating the exit code.
+     */
+    private int executeProcess(Stage stage, Command command) {
+        ProcessMetrics processMetrics = new ProcessMetrics();
+        ProcessEvent processEvent = ProcessEvent.begin(stage.toString(), rMetaData != null ? rMetaData.getId() : -1, command.toString());
+        LogContext context = LogContext.get();
+        LogContext.set(rMetaData != null ? rMetaData.getId() : -1, stage.toString());
+        int exitVal;
+        try {
+            exitVal = ProcessHelper.executeProcess(command, this, Config.getTimeout(stage), processMetrics);
+        } finally {
+            LogContext.restore(context);
+        }
+        ProcessEvent.commit(processEvent, exitVal, processMetrics);
+        recordProcessMetrics(stage, processMetrics, exitVal);
+        if (exitVal == ProcessHelper.TIMEOUT_EXIT_CODE) {
+            timedOutStages.add(stage.toString());
+            errorMessages.add("TIMEOUT: " + stage + " exceeded " + Config.getTimeout(stage) + " seconds");
+            logger.severe("TIMEOUT: " + stage);
+        }
+        return exitVal;
+    }
 
+    /**
+     * Execute an external command once a slot of the given kind is available.
+     * A new ProcessBuilder is created for each command, so that several coordinators can run at the same time.
+     * @param stage The pipeline stage the command belongs to, used to look up its timeout.
+     * @param slots The network or CPU slots of the shared ResourceLimits.
+     * @param command The command, its working directory and environment.
+     * @return Returns an int indicating the exit code.
+     */
+    private int executeProcess(Stage stage, Semaphore slots, Command command) {
+        return executeProcess(stage, slots, 1, command);
     }
 
+    /**
+     * Execute an external command once the given number of slots of the given kind is available.
+     * @param stage The pipeline stage the command belongs to, used to look up its timeout.
+     * @param slots The network or CPU slots of the shared ResourceLimits.
+     * @param permits The number of slots the command occupies, e.g. the number of parallel build jobs.
+     * @param command The command, its working directory and environment.
+     * @return Returns an int indicating the exit code.
+     */
+    private int executeProcess(Stage stage, Semaphore slots, int permits, Command command) {
+        slots.acquireUninterruptibly(permits);
+        try {
+            return executeProcess(stage, command);
+        } finally {
+            slots.release(permits);
+        }
+    }
 
     /**
-     * Update the metadata at a specific index.
+     * @return The environment of the cmake steps. All compiler calls go through wllvm, which records the bitcode of every object file.
+     */
+    private static Map<String, String> getCompilerEnvironment() {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("LLVM_COMPILER", "clang");
+        environment.put("CC", "wllvm");
+        environment.put("CXX", "wllvm++");
+        return environment;
+    }
+
+    private static String getFailedBuildStatus(int exitVal) {
+        return exitVal == ProcessHelper.TIMEOUT_EXIT_CODE ? "TIMEOUT" : "FAILED";
+    }
+
+    /**
+     * Update the metadata at a specific index by appending it to the results.json file.
      * @param rMetaData The updated metadata.
      * @param arrayIndex The index within the repositories.json file.
      */
     private void updateMetaData(RMetaData rMetaData, int arrayIndex){
-        JsonWriter.getInstance().updateRepositoryInJsonArray(rMetaData, arrayIndex);
+        ResultStore.getInstance().append(rMetaData, arrayIndex);
     }
 
 
-    public ArrayList<String> getErrorMessages() {
+    /**
+     * Write the output of a process to the output file of the repository, or to the console if there is none, and collect
+     * the conan packages it downloaded.
+     */
+    @Override
+    public void onOutput(String stage, String line) {
+        ProcessOutputLog output = processOutput;
+        if (output != null)
+            output.write(stage, line);
+        else
+            System.out.println(line);
+        if(line.contains("Downloaded recipe")) {
+            conanDependencies.add(line.substring(0, line.indexOf(":")));
+        }
+    }
+
+    /**
+     * stderr goes to the error log only, which writes every line to its own file.
+     */
+    @Override
+    public void onError(String stage, String line) {
+        errorMessages.add(stage, line);
+    }
+
+    @Override
+    public void onStartFailure(String message) {
+        errorMessages.add(message);
+    }
+
+    public ErrorLog getErrorMessages() {
         return errorMessages;
     }
 
-    public void setErrorMessages(ArrayList<String> errorMessages) {
+    public void setErrorMessages(ErrorLog errorMessages) {
         this.errorMessages = errorMessages;
     }
-    public ArrayList<String> getConanDependencies() {
+    public List<String> getConanDependencies() {
         return conanDependencies;
     }
 
-    public void setConanDependencies(ArrayList<String> conanDependencies) {
-        this.conanDependencies = conanDependencies;
+    public void setConanDependencies(List<String> conanDependencies) {
+        this.conanDependencies = Collections.synchronizedList(conanDependencies);
     }
 }
@@ -0,0 +1,102 @@
+package main;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * An ordered list of unique repository indices, stored as runs of consecutive indices instead of one boxed element per
+ * index. Selecting every repository of a corpus with millions of entries takes a single run, the BitSet used to skip
+ * duplicates one bit per index.
+ */
+class IndexList extends AbstractList<Integer> {
+
+    private final BitSet selected = new BitSet();
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    // The position of the first index of each run within the list.
+    private int[] positions = new int[16];
+    private int runs;
+    private int size;
+
+    /**
+     * Append an index, unless it was added before.
+     */
+    void addIndex(int index) {
+        addRange(index, index);
+    }
+
+    /**
+     * Append the indices of an inclusive range in ascending order, skipping those added before.
+     */
+    void addRange(int from, int to) {
+        // The end of a run is exclusive.
+        to = Math.min(to, Integer.MAX_VALUE - 1);
+        int start = selected.nextClearBit(from);
+        while (start <= to) {
+            int next = selected.nextSetBit(start);
+            int end = next < 0 || next > to ? to + 1 : next;
+            appendRun(start, end);
+            selected.set(start, end);
+            start = selected.nextClearBit(end);
+        }
+    }
+
+    private void appendRun(int start, int end) {
+        if (runs > 0 && ends[runs - 1] == start) {
+            ends[runs - 1] = end;
+        } else {
+            if (runs == starts.length) {
+                starts = Arrays.copyOf(starts, runs * 2);
+                ends = Arrays.copyOf(ends, runs * 2);
+                positions = Arrays.copyOf(positions, runs * 2);
+            }
+            starts[runs] = start;
+            ends[runs] = end;
+            positions[runs] = size;
+            runs++;
+        }
+        size += end - start;
+    }
+
+    @Override
+    public Integer get(int position) {
+        if (position < 0 || position >= size)
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size);
+        int run = Arrays.binarySearch(positions, 0, runs, position);
+        if (run < 0)
+            run = -run - 2;
+        return starts[run] + position - positions[run];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Integer> filter) {
+        int[] oldStarts = starts;
+        int[] oldEnds = ends;
+        int oldRuns = runs;
+        starts = new int[Math.max(16, oldRuns)];
+        ends = new int[starts.length];
+        positions = new int[starts.length];
+        runs = 0;
+        size = 0;
+        boolean removed = false;
+        for (int run = 0; run < oldRuns; run++) {
+            for (int index = oldStarts[run]; index < oldEnds[run]; index++) {
+                if (filter.test(index)) {
+                    selected.clear(index);
+                    removed = true;
+                } else {
+                    appendRun(index, index + 1);
+                }
+            }
+        }
+        modCount++;
+        return removed;
+    }
+}
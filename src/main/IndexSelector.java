@@ -0,0 +1,105 @@
+package main;
+
+import Models.RepositorySummary;
+import utils.JsonReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Resolves the command line arguments into the list of repository indices to process.
+ * Supported forms (may be combined):
+ * <ul>
+ *     <li>{@code 42} - a single index</li>
+ *     <li>{@code 0-5000} - an inclusive range of indices</li>
+ *     <li>{@code @path/to/file} - a file containing indices or ranges, separated by whitespace, commas or new lines</li>
+ *     <li>{@code all} - every repository within the repositories.json file</li>
+ *     <li>{@code unprocessed} - every repository that has no build status yet</li>
+ * </ul>
+ * The indices are kept as runs of consecutive indices (see IndexList), hence selecting a huge corpus costs next to no memory.
+ */
+public class IndexSelector {
+
+    public static final String ALL = "all";
+    public static final String UNPROCESSED = "unprocessed";
+
+    /**
+     * Parse the given arguments into an ordered list of unique indices.
+     * @param args The command line arguments.
+     * @return The indices in the order they were given.
+     * @throws IllegalArgumentException if an argument can not be parsed.
+     */
+    public static List<Integer> parse(String[] args) {
+        IndexList indices = new IndexList();
+        for (String arg : args) {
+            addArgument(indices, arg.trim());
+        }
+        return indices;
+    }
+
+    private static void addArgument(IndexList indices, String arg) {
+        if (arg.isEmpty())
+            return;
+
+        if (arg.equalsIgnoreCase(ALL)) {
+            int size = JsonReader.getInstance().getRepositoryCount();
+            if (size > 0)
+                indices.addRange(0, size - 1);
+        } else if (arg.equalsIgnoreCase(UNPROCESSED)) {
+            int size = JsonReader.getInstance().getRepositoryCount();
+            for (int i = 0; i < size; i++) {
+                if (isUnprocessed(JsonReader.getInstance().readRepositorySummary(i)))
+                    indices.addIndex(i);
+            }
+        } else if (arg.startsWith("@")) {
+            try {
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)))) {
+                    int comment = line.indexOf('#');
+                    if (comment >= 0)
+                        line = line.substring(0, comment);
+                    for (String token : line.split("[\\s,]+"))
+                        addArgument(indices, token.trim());
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Can't read index file: " + arg.substring(1), e);
+            }
+        } else if (arg.indexOf('-') > 0) {
+            int from = parseIndex(arg.substring(0, arg.indexOf('-')));
+            int to = parseIndex(arg.substring(arg.indexOf('-') + 1));
+            if (to < from)
+                throw new IllegalArgumentException("Invalid range '" + arg + "'. The end must not be smaller than the start.");
+            indices.addRange(from, to);
+        } else {
+            indices.addIndex(parseIndex(arg));
+        }
+    }
+
+    private static int parseIndex(String value) {
+        try {
+            int index = Integer.parseInt(value.trim());
+            if (index < 0)
+                throw new IllegalArgumentException("Number must be greater or equals 0. Got: " + value);
+            return index;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number, a range (e.g. 0-5000), an index file (@file), '"
+                    + ALL + "' or '" + UNPROCESSED + "'. Got: " + value, e);
+        }
+    }
+
+    /**
+     * A repository counts as unprocessed as long as the ContainerCoordinator has not stored a build status.
+     * @param summary The fields read by JsonReader.readRepositorySummary, may be null.
+     * @return True if the repository still needs to be processed.
+     */
+    public static boolean isUnprocessed(RepositorySummary summary) {
+        if (summary == null)
+            return false;
+        return isUnprocessed(summary.getBuildStatus());
+    }
+
+    private static boolean isUnprocessed(String buildStatus) {
+        return buildStatus == null || buildStatus.isEmpty() || buildStatus.equals("UNKNOWN");
+    }
+}
@@ -0,0 +1,132 @@
+package main;
+
+import Models.RepositorySummary;
+import utils.JsonReader;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Orders the selected repositories before they are handed to the workers (jobOrder within the config.properties file):
+ * <ul>
+ *     <li>{@code INDEX} - the order given on the command line</li>
+ *     <li>{@code LARGEST_FIRST} - the most expensive repositories first, so that no huge repository is left running
+ *     alone at the end of a batch while all other workers are idle</li>
+ *     <li>{@code QUICK_WINS} - cheap repositories that are likely to build first, to get many results early</li>
+ * </ul>
+ * The cost of a repository is the summed wall time of its stages measured by an earlier run. Repositories without
+ * measurements are estimated from their size, using the median time per kB of the measured repositories.
+ * Only the fields making up the cost are read (see JsonReader.readRepositorySummary) and kept in primitive arrays, hence
+ * ordering a huge selection neither deserializes nor holds the repositories.
+ */
+public class JobOrder {
+
+    public static final String INDEX = "INDEX";
+    public static final String LARGEST_FIRST = "LARGEST_FIRST";
+    public static final String QUICK_WINS = "QUICK_WINS";
+
+    // Used until enough repositories have been measured, roughly one minute per 100 MB of sources.
+    private static final double DEFAULT_MILLIS_PER_KB = 0.6;
+    private static final int MIN_MEASURED = 10;
+
+    private final Logger logger;
+    private final String policy;
+
+    public JobOrder(Logger logger, String policy) {
+        this.logger = logger;
+        this.policy = policy;
+    }
+
+    public static JobOrder fromConfig(Logger logger) {
+        return new JobOrder(logger, Config.JOBORDER);
+    }
+
+    /**
+     * @param arrayIndices The indices to the repositories within the repositories.json file.
+     * @return The indices in the order they should be processed.
+     */
+    public List<Integer> sort(List<Integer> arrayIndices) {
+        if (policy.equals(INDEX) || arrayIndices.size() < 2)
+            return arrayIndices;
+
+        int count = arrayIndices.size();
+        int[] indices = new int[count];
+        // -1 if the repository can't be read, it is placed like a free repository.
+        int[] sizes = new int[count];
+        long[] measuredMillis = new long[count];
+        double[] successProbabilities = new double[count];
+        double[] millisPerKB = new double[count];
+        int measured = 0;
+        int position = 0;
+        for (int arrayIndex : arrayIndices) {
+            RepositorySummary summary = JsonReader.getInstance().isArgInRange(arrayIndex) ? JsonReader.getInstance().readRepositorySummary(arrayIndex) : null;
+            indices[position] = arrayIndex;
+            sizes[position] = summary != null ? summary.getSize() : -1;
+            measuredMillis[position] = summary != null ? summary.getMeasuredMillis() : 0;
+            successProbabilities[position] = getSuccessProbability(summary);
+            if (measuredMillis[position] > 0 && sizes[position] > 0)
+                millisPerKB[measured++] = (double) measuredMillis[position] / sizes[position];
+            position++;
+        }
+        double rate = DEFAULT_MILLIS_PER_KB;
+        if (measured >= MIN_MEASURED) {
+            Arrays.sort(millisPerKB, 0, measured);
+            rate = millisPerKB[measured / 2];
+        }
+
+        // The key in the upper and the position in the lower half, hence equally expensive repositories keep the order given on the command line.
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            double cost = sizes[i] >= 0 ? estimateMillis(sizes[i], measuredMillis[i], rate) : 0;
+            // QUICK_WINS orders by cost per expected success, a repository that failed before is only cheap if it is really tiny.
+            double key = policy.equals(LARGEST_FIRST) ? -cost : cost / successProbabilities[i];
+            order[i] = ((long) toSortableBits(key) << 32) | i;
+        }
+        Arrays.sort(order);
+        IndexList ordered = new IndexList();
+        for (long entry : order)
+            ordered.addIndex(indices[(int) entry]);
+
+        logger.info("Ordered " + ordered.size() + " repositories by " + policy + " - " + measured + " measured by an earlier run, " +
+                String.format("%.3f", rate) + " ms per kB for the others");
+        return ordered;
+    }
+
+    /**
+     * @param size The size of the repository in kB.
+     * @param measuredMillis The processing time measured by an earlier run, 0 if the repository was not processed yet.
+     * @param millisPerKB The estimated processing time per kB of repository size.
+     * @return The measured or estimated processing time of the repository in milliseconds.
+     */
+    private static double estimateMillis(int size, long measuredMillis, double millisPerKB) {
+        if (measuredMillis > 0)
+            return measuredMillis;
+        return Math.max(1, size) * millisPerKB;
+    }
+
+    /**
+     * Map a key onto an int of the same order. A float keeps 24 bits of precision, keys closer to each other count as equal.
+     */
+    private static int toSortableBits(double key) {
+        // Adding 0 turns -0 into 0.
+        int bits = Float.floatToIntBits((float) key + 0.0f);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    /**
+     * @return The chance that the build succeeds, guessed from the build status of the last run.
+     */
+    private static double getSuccessProbability(RepositorySummary summary) {
+        if (summary == null || IndexSelector.isUnprocessed(summary))
+            return 0.5;
+        switch (summary.getBuildStatus()) {
+            case "SUCCESS":
+                return 0.9;
+            case "TIMEOUT":
+                return 0.05;
+            default:
+                return 0.1;
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package main;
 
+import utils.AsyncLogHandler;
+import utils.GitMirrorCache;
+import utils.LeaseManager;
+import utils.ProgressJournal;
+import utils.ResultStore;
+
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.logging.FileHandler;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,7 +28,7 @@ public class MainContainerCoordinator {
         logger.setLevel(Level.ALL);
         Handler handler = null;
         try {
-            handler = new FileHandler(Config.FILEPATH + "/ContainerCoordinator_Log.xml", true);
+            handler = new AsyncLogHandler(Config.FILEPATH + "/ContainerCoordinator_Log.jsonl", Config.LOGQUEUECAPACITY);
             handler.setLevel(Level.ALL);
             logger.addHandler(handler);
         } catch (IOException e) {
@@ -36,30 +44,93 @@ public class MainContainerCoordinator {
         logger.config("repositories.json is read to: " + Config.FILEPATH + "/" + Config.JSONFILENAME);
         logger.config("results.json is output to: " + Config.FILEPATH + "/" + Config.RESULTFILENAME);
         logger.config("Using analysis tool : " + Config.ANALYSISTOOL);
+        logger.config("Process output: " + Config.PROCESSLOGS);
+        logger.config("Job order: " + Config.JOBORDER);
+        logger.config("Checkout mode: " + Config.CHECKOUTMODE);
+        if (Config.CHECKOUTMODE.equals("SHALLOW") && GitMirrorCache.isEnabled()) {
+            System.err.println("checkoutMode SHALLOW is ignored, the repositories are cloned from the git mirror cache (gitMirrorPath).");
+            logger.warning("SHALLOW CHECKOUT IGNORED - GIT MIRROR CACHE ENABLED");
+        }
 
         Calendar calendar = Calendar.getInstance();
         SimpleDateFormat formatter = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
         String systemStartTime = formatter.format(calendar.getTime());
         long startTime = System.nanoTime();
 
-        if(args.length != 1){
-            System.err.println("Expected 1 argument. Got " + args.length + " argument(s).\n Please provide exactly one positive number (including 0).");
+        if(args.length == 1 && args[0].equalsIgnoreCase("compact")) {
+            try {
+                ResultStore.getInstance().compact();
+                logger.info("Compacted " + Config.RESULTFILENAME + " into " + Config.JSONFILENAME);
+            } catch (IOException e) {
+                System.err.println("Failed to compact the results into the repositories.json file.");
+                System.err.println(e.getMessage());
+                logger.severe("FAILED: COMPACTING RESULTS");
+                System.exit(1);
+            }
+        } else if(args.length >= 1 && args[0].equalsIgnoreCase("prewarm")) {
+            List<Integer> arrayIndices;
+            try {
+                arrayIndices = IndexSelector.parse(args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{IndexSelector.ALL});
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println("Aborting.");
+                System.exit(1);
+                return;
+            }
+            new ConanPrewarm(logger).run(arrayIndices);
+            logExecutionTime(logger, startTime, systemStartTime);
+        } else if(args.length < 1){
+            System.err.println("Expected at least 1 argument. Got " + args.length + " argument(s).\n Please provide a positive number (including 0), " +
+                    "a range (e.g. 0-5000), an index file (@file), 'all' or 'unprocessed'.\n Use 'compact' to merge the results into the repositories.json file.\n" +
+                    " Use 'prewarm', optionally followed by indices, to build the most common conan packages ahead of a run.");
         } else {
+            List<Integer> arrayIndices;
             try {
-                int arrayIndex = Integer.parseInt(args[0]);
-                if(arrayIndex >= 0) {
-                    new ContainerCoordinator(logger, startTime, systemStartTime).run(arrayIndex);
-                } else {
-                    System.err.println("Number must be greater or equals 0.");
-                    System.err.println("Aborting.");
-                    System.exit(1);
-                }
-            } catch (NumberFormatException e) {
-                System.err.println("Expected a number as an argument.");
+                arrayIndices = IndexSelector.parse(args);
+            } catch (IllegalArgumentException e) {
                 System.err.println(e.getMessage());
                 System.err.println("Aborting.");
                 System.exit(1);
+                return;
             }
+
+            if (Config.RESUME) {
+                int selected = arrayIndices.size();
+                arrayIndices.removeIf(arrayIndex -> ProgressJournal.getInstance().isFinished(arrayIndex));
+                logger.info("Skipping " + (selected - arrayIndices.size()) + " repositories finished by an earlier run.");
+            }
+            logger.info("Processing " + arrayIndices.size() + " repositories within this run.");
+            arrayIndices = JobOrder.fromConfig(logger).sort(arrayIndices);
+            if (Config.PIPELINEMODE.equals("STAGED"))
+                StagedPipeline.fromConfig(logger).run(arrayIndices);
+            else
+                RepositoryScheduler.fromConfig(logger).run(arrayIndices);
+            ResultStore.getInstance().close();
+            if (Config.RESUME)
+                ProgressJournal.getInstance().close();
+            if (Config.SHARDING)
+                LeaseManager.getInstance().close();
+            logExecutionTime(logger, startTime, systemStartTime);
         }
+        // Writes the queued log records. On System.exit the LogManager closes the handler instead.
+        if (handler != null)
+            handler.close();
+    }
+
+    /**
+     * Log the overall execution time since the ContainerCoordinator was started.
+     */
+    private static void logExecutionTime(Logger logger, long startTime, String systemStartTime) {
+        Calendar calendar = Calendar.getInstance();
+        SimpleDateFormat formatter = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
+        long endTime   = System.nanoTime();
+        long duration = endTime - startTime;
+
+        logger.info("ContainerCoordinator started at: " + systemStartTime);
+        logger.info("ContainerCoordinator terminated at: " + formatter.format(calendar.getTime()));
+        logger.info("Overall execution time in seconds: " + TimeUnit.NANOSECONDS.toSeconds(duration));
+        logger.info("Overall execution time in minutes: " + (double)TimeUnit.NANOSECONDS.toSeconds(duration)/60);
+        logger.info("Overall execution time in hours: " + (double)TimeUnit.NANOSECONDS.toSeconds(duration)/3600);
+        logger.info("ContainerCoordinator finished. Shutting down");
     }
 }
@@ -0,0 +1,109 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the container pipeline for several repositories at the same time using a bounded pool of workers.
+ * Each repository gets its own ContainerCoordinator, while the network and CPU slots are shared between all of them.
+ */
+public class RepositoryScheduler {
+
+    private final Logger logger;
+    private final int workers;
+    private final ResourceLimits limits;
+
+    public RepositoryScheduler(Logger logger, int workers, ResourceLimits limits) {
+        this.logger = logger;
+        this.workers = Math.max(1, workers);
+        this.limits = limits;
+    }
+
+    /**
+     * Create a scheduler sized by the config.properties file. Values that are not configured are derived from
+     * the number of available cores and the physical memory of the machine.
+     * @param logger The logger shared by all workers.
+     * @return The configured RepositoryScheduler.
+     */
+    public static RepositoryScheduler fromConfig(Logger logger) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int cpuSlots = Config.CPUSLOTS > 0 ? Config.CPUSLOTS : cores;
+        int networkSlots = Math.max(1, Config.NETWORKSLOTS);
+
+        int workers = Config.WORKERS;
+        if (workers <= 0) {
+            // Enough workers to keep every CPU slot busy while others are waiting for the network.
+            workers = cpuSlots + networkSlots;
+            long memoryMB = getPhysicalMemoryMB();
+            if (memoryMB > 0 && Config.MEMORYPERWORKER > 0)
+                workers = (int) Math.max(1, Math.min(workers, memoryMB / Config.MEMORYPERWORKER));
+        }
+
+        // Share the cores between the builds of all workers, unless configured otherwise.
+        int buildJobs = Config.BUILDJOBS > 0 ? Config.BUILDJOBS : Math.max(1, cores / workers);
+
+        logger.config("Workers: " + workers + " Network slots: " + networkSlots + " CPU slots: " + cpuSlots + " Build jobs: " + buildJobs);
+        return new RepositoryScheduler(logger, workers, new ResourceLimits(networkSlots, cpuSlots, buildJobs));
+    }
+
+    /**
+     * Process all given repositories and block until every one of them is finished.
+     * @param arrayIndices The indices to the repositories within the repositories.json file.
+     */
+    public void run(List<Integer> arrayIndices) {
+        if (workers == 1) {
+            ContainerCoordinator containerCoordinator = new ContainerCoordinator(logger, limits);
+            for (int arrayIndex : arrayIndices)
+                runSafely(containerCoordinator, arrayIndex);
+            return;
+        }
+
+        logger.info("Running " + arrayIndices.size() + " repositories with " + workers + " workers.");
+        AtomicInteger finished = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, arrayIndices.size())));
+        for (int arrayIndex : arrayIndices) {
+            executor.execute(() -> {
+                runSafely(new ContainerCoordinator(logger, limits), arrayIndex);
+                logger.info("Finished " + finished.incrementAndGet() + " of " + arrayIndices.size() + " repositories.");
+            });
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                logger.info("Still waiting for workers. Finished " + finished.get() + " of " + arrayIndices.size() + " repositories.");
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while waiting for workers. Aborting.");
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSafely(ContainerCoordinator containerCoordinator, int arrayIndex) {
+        try {
+            containerCoordinator.run(arrayIndex);
+        } catch (RuntimeException e) {
+            // One broken repository must not abort the remaining batch.
+            System.err.println("Unexpected error while processing index " + arrayIndex + ": " + e);
+            logger.log(Level.SEVERE, "FAILED: PIPELINE AT INDEX " + arrayIndex, e);
+        }
+    }
+
+    static long getPhysicalMemoryMB() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getTotalMemorySize() / (1024 * 1024);
+        return -1;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+}
@@ -0,0 +1,49 @@
+package main;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Concurrency limits that are shared between all repository pipelines running within the same process.
+ * Network-bound work (cloning, downloading dependencies) and CPU-bound work (building, extracting bitcode, analysis)
+ * are limited independently, so that repositories can clone while others are being built.
+ */
+public class ResourceLimits {
+
+    private final Semaphore networkSlots;
+    private final Semaphore cpuSlots;
+    private final int buildJobs;
+
+    /**
+     * @param networkSlots Maximum number of network-bound steps running at the same time.
+     * @param cpuSlots Maximum number of CPU-bound steps running at the same time.
+     * @param buildJobs Number of parallel jobs of a single build. A build occupies this many CPU slots,
+     *                  hence it is capped by the number of CPU slots.
+     */
+    public ResourceLimits(int networkSlots, int cpuSlots, int buildJobs) {
+        this.networkSlots = new Semaphore(Math.max(1, networkSlots), true);
+        this.cpuSlots = new Semaphore(Math.max(1, cpuSlots), true);
+        this.buildJobs = Math.max(1, Math.min(buildJobs, Math.max(1, cpuSlots)));
+    }
+
+    /**
+     * Limits for a single pipeline that never has to wait for another one.
+     * Builds use the configured number of jobs or all available cores.
+     * @return ResourceLimits that do not restrict anything.
+     */
+    public static ResourceLimits unlimited() {
+        int buildJobs = Config.BUILDJOBS > 0 ? Config.BUILDJOBS : Runtime.getRuntime().availableProcessors();
+        return new ResourceLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, buildJobs);
+    }
+
+    public Semaphore getNetworkSlots() {
+        return networkSlots;
+    }
+
+    public Semaphore getCpuSlots() {
+        return cpuSlots;
+    }
+
+    public int getBuildJobs() {
+        return buildJobs;
+    }
+}
@@ -0,0 +1,250 @@
+package main;
+
+import utils.LogContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the container pipeline as a chain of stages connected by bounded queues:
+ * fetch -> dependency install -> build -> extract -> analyze -> persist.
+ * Every stage has its own workers, hence a repository can be cloned while another one is built and a third one is analysed.
+ * The bounded queues limit the number of repositories (and workspaces) in flight.
+ */
+public class StagedPipeline {
+
+    private static final long QUEUE_REPORT_SECONDS = 60;
+    // Marks the end of the input. Each stage passes it on once all of its workers are finished.
+    private static final Job END = new Job(null, -1);
+
+    private final Logger logger;
+    private final ResourceLimits limits;
+    private final List<PipelineStage> stages = new ArrayList<>();
+    private final AtomicInteger finished = new AtomicInteger();
+    private int total;
+
+    public StagedPipeline(Logger logger, ResourceLimits limits, int fetchWorkers, int dependencyWorkers, int buildWorkers,
+                          int extractWorkers, int analysisWorkers, int queueCapacity) {
+        this.logger = logger;
+        this.limits = limits;
+        stages.add(new PipelineStage("FETCH", fetchWorkers, queueCapacity, job -> {
+            if (job.coordinator.prepare(job.arrayIndex))
+                job.coordinator.fetch();
+            else
+                job.skipped = true;
+        }));
+        stages.add(new PipelineStage("DEPENDENCIES", dependencyWorkers, queueCapacity, job -> job.coordinator.installDependencies()));
+        stages.add(new PipelineStage("BUILD", buildWorkers, queueCapacity, job -> job.coordinator.build()));
+        stages.add(new PipelineStage("EXTRACT", extractWorkers, queueCapacity, job -> job.coordinator.extract()));
+        stages.add(new PipelineStage("ANALYZE", analysisWorkers, queueCapacity, job -> job.coordinator.analyze()));
+        // A single worker is enough, the results are only appended to the results.json file.
+        stages.add(new PipelineStage("PERSIST", 1, queueCapacity, job -> {
+            job.coordinator.releaseWorkspace();
+            job.coordinator.persist();
+            job.coordinator.releaseLease();
+        }));
+        for (int i = 0; i < stages.size() - 1; i++)
+            stages.get(i).next = stages.get(i + 1);
+    }
+
+    /**
+     * Create a pipeline sized by the config.properties file. Worker counts that are not configured are derived from
+     * the network and CPU slots, the number of concurrent builds is additionally limited by the physical memory.
+     * @param logger The logger shared by all workers.
+     * @return The configured StagedPipeline.
+     */
+    public static StagedPipeline fromConfig(Logger logger) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int cpuSlots = Config.CPUSLOTS > 0 ? Config.CPUSLOTS : cores;
+        int networkSlots = Math.max(1, Config.NETWORKSLOTS);
+
+        int fetchWorkers = Config.FETCHWORKERS > 0 ? Config.FETCHWORKERS : networkSlots;
+        int dependencyWorkers = Config.DEPENDENCYWORKERS > 0 ? Config.DEPENDENCYWORKERS : networkSlots;
+        int buildWorkers = Config.BUILDWORKERS;
+        if (buildWorkers <= 0) {
+            // Two builds overlap the serial parts (configure, linking) of one build with the parallel parts of the other.
+            buildWorkers = Math.min(2, cpuSlots);
+            long memoryMB = RepositoryScheduler.getPhysicalMemoryMB();
+            if (memoryMB > 0 && Config.MEMORYPERWORKER > 0)
+                buildWorkers = (int) Math.max(1, Math.min(buildWorkers, memoryMB / Config.MEMORYPERWORKER));
+        }
+        int buildJobs = Config.BUILDJOBS > 0 ? Config.BUILDJOBS : Math.max(1, cpuSlots / buildWorkers);
+        int queueCapacity = Math.max(1, Config.STAGEQUEUECAPACITY);
+
+        logger.config("Staged pipeline - Fetch workers: " + fetchWorkers + " Dependency workers: " + dependencyWorkers + " Build workers: " + buildWorkers +
+                " Extract workers: " + Config.EXTRACTSTAGEWORKERS + " Analysis workers: " + Config.ANALYSISSTAGEWORKERS + " Queue capacity: " + queueCapacity);
+        logger.config("Network slots: " + networkSlots + " CPU slots: " + cpuSlots + " Build jobs: " + buildJobs);
+        return new StagedPipeline(logger, new ResourceLimits(networkSlots, cpuSlots, buildJobs), fetchWorkers, dependencyWorkers, buildWorkers,
+                Config.EXTRACTSTAGEWORKERS, Config.ANALYSISSTAGEWORKERS, queueCapacity);
+    }
+
+    /**
+     * Process all given repositories and block until every one of them is finished.
+     * @param arrayIndices The indices to the repositories within the repositories.json file.
+     */
+    public void run(List<Integer> arrayIndices) {
+        total = arrayIndices.size();
+        logger.info("Running " + total + " repositories within a staged pipeline.");
+
+        List<Thread> threads = new ArrayList<>();
+        for (PipelineStage stage : stages) {
+            for (int i = 0; i < stage.workers; i++) {
+                Thread thread = new Thread(() -> work(stage), "pipeline-" + stage.name.toLowerCase() + "-" + i);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> logger.info("Queue depths: " + formatQueueDepths() + " Finished " + finished.get() + " of " + total + " repositories."),
+                QUEUE_REPORT_SECONDS, QUEUE_REPORT_SECONDS, TimeUnit.SECONDS);
+
+        try {
+            PipelineStage first = stages.get(0);
+            for (int arrayIndex : arrayIndices)
+                first.put(new Job(new ContainerCoordinator(logger, limits), arrayIndex));
+            first.put(END);
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while waiting for the pipeline. Aborting.");
+            for (Thread thread : threads)
+                thread.interrupt();
+            Thread.currentThread().interrupt();
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        StringBuilder maxDepths = new StringBuilder();
+        for (PipelineStage stage : stages)
+            maxDepths.append(stage.name).append('=').append(stage.maxDepth.get()).append('/').append(stage.queue.remainingCapacity() + stage.queue.size()).append(' ');
+        logger.info("Maximum queue depths: " + maxDepths.toString().trim());
+    }
+
+    /**
+     * Take repositories from the queue of the stage, run the stage and hand them on to the next stage until the end of the input.
+     * @param stage The stage the worker belongs to.
+     */
+    private void work(PipelineStage stage) {
+        try {
+            while (true) {
+                Job job = stage.queue.take();
+                if (job == END) {
+                    // Put back for the remaining workers of this stage. The last one passes the end on.
+                    stage.queue.put(END);
+                    if (stage.activeWorkers.decrementAndGet() == 0 && stage.next != null)
+                        stage.next.put(END);
+                    return;
+                }
+                stage.busyWorkers.incrementAndGet();
+                try {
+                    process(stage, job);
+                } finally {
+                    stage.busyWorkers.decrementAndGet();
+                }
+                if (stage.next != null) {
+                    stage.next.put(job);
+                } else {
+                    logger.info("Finished " + finished.incrementAndGet() + " of " + total + " repositories.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(PipelineStage stage, Job job) {
+        if (job.skipped) {
+            // Nothing left to do but freeing the workspace for equally named repositories.
+            job.coordinator.releaseWorkspace();
+            return;
+        }
+        // A failed repository only passes through the remaining stages to be persisted.
+        if (job.failed && stage.next != null)
+            return;
+        try {
+            stage.action.accept(job);
+        } catch (RuntimeException e) {
+            // One broken repository must not abort the remaining batch.
+            System.err.println("Unexpected error while processing index " + job.arrayIndex + ": " + e);
+            logger.log(Level.SEVERE, "FAILED: PIPELINE STAGE " + stage.name + " AT INDEX " + job.arrayIndex, e);
+            if (stage.next != null && job.coordinator.recordFailure(stage.name, e)) {
+                job.failed = true;
+            } else {
+                job.skipped = true;
+                job.coordinator.releaseWorkspace();
+                job.coordinator.releaseLease();
+            }
+        } finally {
+            // The worker continues with another repository.
+            LogContext.clear();
+        }
+    }
+
+    private String formatQueueDepths() {
+        StringBuilder depths = new StringBuilder();
+        for (PipelineStage stage : stages) {
+            int depth = stage.queue.size();
+            // The end marker is no repository.
+            if (stage.activeWorkers.get() == 0 && depth > 0)
+                depth--;
+            depths.append(stage.name).append('=').append(depth).append(" (busy ").append(stage.busyWorkers.get()).append('/').append(stage.workers).append(") ");
+        }
+        return depths.toString().trim();
+    }
+
+    /**
+     * A repository travelling through the pipeline.
+     */
+    private static class Job {
+        private final ContainerCoordinator coordinator;
+        private final int arrayIndex;
+        // Set if the index is out of range or could not be persisted after a failure. The remaining stages are skipped.
+        private volatile boolean skipped;
+        // Set if a stage failed unexpectedly. The remaining stages are skipped, but the failure is persisted.
+        private volatile boolean failed;
+
+        private Job(ContainerCoordinator coordinator, int arrayIndex) {
+            this.coordinator = coordinator;
+            this.arrayIndex = arrayIndex;
+        }
+    }
+
+    private static class PipelineStage {
+        private final String name;
+        private final int workers;
+        private final BlockingQueue<Job> queue;
+        private final Consumer<Job> action;
+        private final AtomicInteger activeWorkers;
+        private final AtomicInteger busyWorkers = new AtomicInteger();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private PipelineStage next;
+
+        private PipelineStage(String name, int workers, int queueCapacity, Consumer<Job> action) {
+            this.name = name;
+            this.workers = Math.max(1, workers);
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.action = action;
+            this.activeWorkers = new AtomicInteger(this.workers);
+        }
+
+        private void put(Job job) throws InterruptedException {
+            queue.put(job);
+            if (job != END)
+                maxDepth.accumulateAndGet(queue.size(), Math::max);
+        }
+    }
+}
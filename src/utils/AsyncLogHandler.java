@@ -0,0 +1,177 @@
+package utils;
+
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Writes log records as JSON lines from a background thread, so that the workers never wait for the disk.
+ * Every line carries the repository and stage of the logging thread (see LogContext), e.g.
+ * {"time":"...","level":"INFO","thread":"worker-1","repository":7,"stage":"BUILD","message":"FINISHED: CMAKE BUILD"}
+ * If the queue is full, records of level INFO and above block the logging thread for up to a second until there is space
+ * again (back-pressure), less important records (CONFIG, FINE, ...) are dropped at once. The number of dropped records is
+ * logged once the queue drained. If the log file can not be written anymore, the remaining records go to stderr and the
+ * logging threads no longer wait for the queue.
+ */
+public class AsyncLogHandler extends Handler {
+
+    private static final Entry END = new Entry(null, null, null);
+    private static final long BLOCK_MILLIS = 1000;
+
+    private final BlockingQueue<Entry> queue;
+    private final Writer writer;
+    private final Thread writerThread;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private volatile boolean failed;
+
+    /**
+     * @param path The log file, new lines are appended.
+     * @param capacity The number of records buffered in memory.
+     */
+    public AsyncLogHandler(String path, int capacity) throws IOException {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8));
+        this.writerThread = new Thread(this::writeLoop, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+        Entry entry = new Entry(record, LogContext.get(), Thread.currentThread().getName());
+        if (record.getLevel().intValue() >= Level.INFO.intValue() && !failed) {
+            try {
+                if (!queue.offer(entry, BLOCK_MILLIS, TimeUnit.MILLISECONDS))
+                    dropped.incrementAndGet();
+            } catch (InterruptedException e) {
+                dropped.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+        } else if (!queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void writeLoop() {
+        Writer out = writer;
+        while (true) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                if (entry != END)
+                    write(out, entry);
+                // Flush once the queue drained, so that a burst of records is written at once.
+                if (entry == END || queue.isEmpty()) {
+                    writeDropped(out);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (failed)
+                    return;
+                failed = true;
+                reportError("Couldn't write the log file, logging to stderr instead", e, ErrorManager.WRITE_FAILURE);
+                out = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+            }
+            if (entry == END)
+                return;
+        }
+    }
+
+    private void write(Writer out, Entry entry) throws IOException {
+        LogRecord record = entry.record;
+        StringBuilder line = new StringBuilder(128);
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(record.getMillis())).append('"');
+        line.append(",\"level\":\"").append(record.getLevel().getName()).append('"');
+        line.append(",\"thread\":").append(quote(entry.thread));
+        if (entry.context != null) {
+            line.append(",\"repository\":").append(entry.context.getRepositoryId());
+            line.append(",\"stage\":").append(quote(entry.context.getStage()));
+        }
+        line.append(",\"message\":").append(quote(getFormatter() != null ? getFormatter().formatMessage(record) : record.getMessage()));
+        if (record.getThrown() != null) {
+            StringWriter stackTrace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(stackTrace));
+            line.append(",\"thrown\":").append(quote(stackTrace.toString()));
+        }
+        line.append("}\n");
+        out.write(line.toString());
+    }
+
+    private void writeDropped(Writer out) throws IOException {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            out.write("{\"time\":\"" + Instant.now() + "\",\"level\":\"WARNING\",\"thread\":\"log-writer\",\"message\":\"Dropped " +
+                    count + " log records, the log queue was full.\"}\n");
+        }
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : new JsonPrimitive(value).toString();
+    }
+
+    @Override
+    public void flush() {
+        // The writer thread flushes as soon as the queue is empty.
+    }
+
+    /**
+     * Write all queued records and close the file. Further records are ignored. May be called repeatedly.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            // Waits until the writer thread made space, unless it ended after a failure.
+            while (!queue.offer(END, BLOCK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!writerThread.isAlive())
+                    break;
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            reportError("Couldn't close the log file", e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    private static class Entry {
+        private final LogRecord record;
+        private final LogContext context;
+        private final String thread;
+
+        private Entry(LogRecord record, LogContext context, String thread) {
+            this.record = record;
+            this.context = context;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An external tool call, started directly without a wrapping shell.
+ * Replaces the former "bash -c 'cd ... && export ... && tool ...'" strings: the working directory, the environment
+ * and the answers written to stdin are properties of the command instead of shell syntax.
+ * Arguments are passed as they are, hence they are neither split at spaces nor expanded.
+ */
+public class Command {
+
+    private final List<String> arguments = new ArrayList<>();
+    private final Map<String, String> environment = new LinkedHashMap<>();
+    private File directory;
+    private boolean redirectErrorStream;
+    private String answer;
+
+    /**
+     * @param arguments The tool followed by its arguments.
+     */
+    public Command(String... arguments) {
+        this.arguments.addAll(Arrays.asList(arguments));
+    }
+
+    public Command arguments(String... arguments) {
+        this.arguments.addAll(Arrays.asList(arguments));
+        return this;
+    }
+
+    public Command arguments(List<String> arguments) {
+        this.arguments.addAll(arguments);
+        return this;
+    }
+
+    /**
+     * @param directory The working directory of the tool, the directory of the JVM if not set.
+     */
+    public Command directory(String directory) {
+        this.directory = new File(directory);
+        return this;
+    }
+
+    /**
+     * Set a variable in addition to the environment inherited from the JVM.
+     */
+    public Command environment(String name, String value) {
+        environment.put(name, value);
+        return this;
+    }
+
+    public Command environment(Map<String, String> environment) {
+        this.environment.putAll(environment);
+        return this;
+    }
+
+    /**
+     * Merge stderr into stdout (2>&1), e.g. for tools that print their progress to stderr.
+     * Merged lines are printed but not collected as error messages.
+     */
+    public Command redirectErrorStream() {
+        this.redirectErrorStream = true;
+        return this;
+    }
+
+    /**
+     * Answer every prompt of the tool with the given line, like piping "yes answer" into it.
+     * @param answer The line written to stdin until the tool terminates or closes stdin.
+     */
+    public Command answerPrompts(String answer) {
+        this.answer = answer;
+        return this;
+    }
+
+    /**
+     * @return A new ProcessBuilder, hence the same command may be started several times.
+     */
+    public ProcessBuilder toProcessBuilder() {
+        ProcessBuilder processBuilder = new ProcessBuilder(arguments);
+        if (directory != null)
+            processBuilder.directory(directory);
+        processBuilder.environment().putAll(environment);
+        processBuilder.redirectErrorStream(redirectErrorStream);
+        return processBuilder;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", arguments);
+    }
+}
@@ -0,0 +1,109 @@
+package utils;
+
+import main.Config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opt-in ccache integration for the wllvm builds.
+ * ccache wraps wllvm/wllvm++ through the CMake compiler launcher. To keep the bitcode extraction working on cache hits,
+ * wllvm stores the bitcode files in a persistent store next to the cache (WLLVM_BC_STORE), so that the bitcode path
+ * embedded into a cached object file still exists after the build folder has been deleted.
+ */
+public class CompilerCacheHelper {
+
+    private static final String STATS_LOG_NAME = "ccache-stats.log";
+
+    public static boolean isEnabled() {
+        return !Config.CCACHEDIR.isEmpty();
+    }
+
+    /**
+     * Configure ccache and the wllvm bitcode store. Creates the bitcode store if it does not exist yet.
+     * @return The environment variables, empty if ccache is disabled.
+     */
+    public static Map<String, String> getEnvironment() {
+        Map<String, String> environment = new LinkedHashMap<>();
+        if (!isEnabled())
+            return environment;
+        try {
+            Files.createDirectories(Paths.get(Config.CCACHEDIR, "bitcode"));
+        } catch (IOException e) {
+            System.err.println("Couldn't create the wllvm bitcode store within " + Config.CCACHEDIR);
+            System.err.println(e.getMessage());
+        }
+        environment.put("CCACHE_DIR", Config.CCACHEDIR);
+        environment.put("WLLVM_BC_STORE", Config.CCACHEDIR + "/bitcode");
+        // Paths below the container path are hashed relative, so a fresh clone of the same repository hits the cache.
+        environment.put("CCACHE_BASEDIR", Config.CONTAINERPATH);
+        return environment;
+    }
+
+    /**
+     * Same as {@link #getEnvironment()}, but additionally logs the result of every compiler call of the build.
+     * @param workspace The folder the repository was cloned into.
+     * @return The environment variables of the build step, empty if ccache is disabled.
+     */
+    public static Map<String, String> getBuildEnvironment(String workspace) {
+        Map<String, String> environment = getEnvironment();
+        if (isEnabled())
+            environment.put("CCACHE_STATSLOG", getStatisticsLogPath(workspace));
+        return environment;
+    }
+
+    /**
+     * @return The CMake arguments that start every compiler call through ccache, empty if ccache is disabled.
+     */
+    public static List<String> getCMakeArguments() {
+        if (!isEnabled())
+            return Collections.emptyList();
+        return Arrays.asList("-DCMAKE_C_COMPILER_LAUNCHER=ccache", "-DCMAKE_CXX_COMPILER_LAUNCHER=ccache");
+    }
+
+    /**
+     * Count the cache hits and misses of the last build, read from the ccache statistics log within the build folder.
+     * @param workspace The folder the repository was cloned into.
+     * @return An array containing the number of hits and misses, or null if no statistics were written.
+     */
+    public static int[] readStatistics(String workspace) {
+        Path statsLog = Paths.get(getStatisticsLogPath(workspace));
+        if (!Files.exists(statsLog))
+            return null;
+        int hits = 0;
+        int misses = 0;
+        try {
+            List<String> lines = Files.readAllLines(statsLog);
+            for (String line : lines) {
+                switch (line.trim()) {
+                    case "direct_cache_hit":
+                    case "preprocessed_cache_hit":
+                        hits++;
+                        break;
+                    case "cache_miss":
+                        misses++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Couldn't read ccache statistics from " + statsLog);
+            System.err.println(e.getMessage());
+            return null;
+        }
+        return new int[]{hits, misses};
+    }
+
+    private static String getStatisticsLogPath(String workspace) {
+        // The build folder is deleted before each build, hence the log only contains the statistics of the current build.
+        return workspace + "/build/" + STATS_LOG_NAME;
+    }
+}
@@ -0,0 +1,112 @@
+package utils;
+
+import main.Config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Opt-in conan cache shared by all workers (CONAN_USER_HOME).
+ * Every package is built once for the whole corpus instead of once per repository. Conan guards the packages within
+ * its cache with file locks, hence workers and coordinators sharing the folder may install at the same time.
+ */
+public class ConanCacheHelper {
+
+    private static final Pattern SECTION = Pattern.compile("^\\s*\\[(.*)]\\s*$");
+    // name/version, optionally followed by @user/channel. Version ranges (e.g. [>1.0]) can not be prewarmed.
+    private static final Pattern REFERENCE = Pattern.compile("[A-Za-z0-9_.+-]+/[A-Za-z0-9_.+-]+(?:@[A-Za-z0-9_.+-]+/[A-Za-z0-9_.+-]+)?");
+    private static final Pattern QUOTED_REFERENCE = Pattern.compile("[\"'](" + REFERENCE.pattern() + ")[\"']");
+    private static boolean prepared;
+
+    public static boolean isEnabled() {
+        return !Config.CONANCACHE.isEmpty();
+    }
+
+    /**
+     * @return The environment variables pointing conan to the shared cache, empty if the shared cache is disabled.
+     */
+    public static Map<String, String> getEnvironment() {
+        if (!isEnabled())
+            return Collections.emptyMap();
+        prepare();
+        return Collections.singletonMap("CONAN_USER_HOME", Config.CONANCACHE);
+    }
+
+    /**
+     * Copy the profiles (e.g. the clang profile used by every install) and the remotes of the default conan home into the
+     * shared cache, unless it already has its own.
+     */
+    private static synchronized void prepare() {
+        if (prepared)
+            return;
+        prepared = true;
+        Path defaultHome = Paths.get(System.getProperty("user.home"), ".conan");
+        Path sharedHome = Paths.get(Config.CONANCACHE, ".conan");
+        try {
+            Files.createDirectories(sharedHome);
+            Path profiles = defaultHome.resolve("profiles");
+            if (Files.isDirectory(profiles) && !Files.exists(sharedHome.resolve("profiles"))) {
+                Files.createDirectories(sharedHome.resolve("profiles"));
+                try (Stream<Path> list = Files.list(profiles)) {
+                    for (Path profile : (Iterable<Path>) list::iterator)
+                        Files.copy(profile, sharedHome.resolve("profiles").resolve(profile.getFileName()));
+                }
+            }
+            Path remotes = defaultHome.resolve("remotes.json");
+            if (Files.exists(remotes) && !Files.exists(sharedHome.resolve("remotes.json")))
+                Files.copy(remotes, sharedHome.resolve("remotes.json"), StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (IOException e) {
+            System.err.println("Couldn't prepare the shared conan cache within " + Config.CONANCACHE);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Read the package references from the [requires] section of a conanfile.txt.
+     * @param conanfile The content of the conanfile.txt.
+     * @return The references in the order they are listed.
+     */
+    public static Set<String> parseConanfileTxt(String conanfile) {
+        Set<String> references = new LinkedHashSet<>();
+        boolean requires = false;
+        for (String line : conanfile.split("\n")) {
+            Matcher section = SECTION.matcher(line);
+            if (section.matches()) {
+                requires = section.group(1).trim().equals("requires");
+                continue;
+            }
+            String requirement = line.replaceAll("#.*", "").trim();
+            if (requires && REFERENCE.matcher(requirement).matches())
+                references.add(requirement);
+        }
+        return references;
+    }
+
+    /**
+     * Read the package references from a conanfile.py. Only literal references on lines containing "requires"
+     * (requires = ..., self.requires(...)) are found, references computed at runtime are missed.
+     * @param conanfile The content of the conanfile.py.
+     * @return The references in the order they are listed.
+     */
+    public static Set<String> parseConanfilePy(String conanfile) {
+        Set<String> references = new LinkedHashSet<>();
+        for (String line : conanfile.split("\n")) {
+            if (!line.contains("requires"))
+                continue;
+            Matcher reference = QUOTED_REFERENCE.matcher(line);
+            while (reference.find())
+                references.add(reference.group(1));
+        }
+        return references;
+    }
+}
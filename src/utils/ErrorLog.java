@@ -0,0 +1,177 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The error messages of a repository: failures reported by the coordinator and everything the tools wrote to stderr.
+ * Only a bounded summary is kept in memory and stored within the results. Repeated lines are counted instead of stored
+ * again. The first half of the summary holds the first distinct lines (usually the root cause), the second half is a
+ * ring buffer of the latest ones (usually the final failure). Every line is written to a sidecar file.
+ * Each line is classified by the stage of the thread reporting it (see LogContext).
+ */
+public class ErrorLog {
+
+    private final int limit;
+    private final String sidecarPath;
+    private final boolean compress;
+    private final boolean append;
+    private final Map<String, Entry> keptEntries = new HashMap<>();
+    private final List<Entry> head = new ArrayList<>();
+    private final Deque<Entry> tail = new ArrayDeque<>();
+    private ProcessOutputLog sidecar;
+    private boolean sidecarFailed;
+    private long lines;
+    private long omittedLines;
+
+    /**
+     * An error log without sidecar file.
+     * @param limit The maximum number of distinct lines within the summary.
+     */
+    public ErrorLog(int limit) {
+        this(limit, null, false, false);
+    }
+
+    /**
+     * @param limit The maximum number of distinct lines within the summary.
+     * @param sidecarPath The file receiving all lines, created on the first line. Null for no sidecar file.
+     * @param compress True to write a gzip compressed sidecar file.
+     * @param append True to keep the lines of an earlier run, e.g. when a repository is resumed.
+     */
+    public ErrorLog(int limit, String sidecarPath, boolean compress, boolean append) {
+        this.limit = Math.max(2, limit);
+        this.sidecarPath = sidecarPath;
+        this.compress = compress;
+        this.append = append;
+    }
+
+    /**
+     * Add a line, classified by the stage of the current thread.
+     * @param line The error message.
+     */
+    public void add(String line) {
+        LogContext context = LogContext.get();
+        add(context != null ? context.getStage() : null, line);
+    }
+
+    public synchronized void add(String stage, String line) {
+        lines++;
+        writeSidecar(stage, line);
+        String key = stage + '\n' + line;
+        Entry entry = keptEntries.get(key);
+        if (entry != null) {
+            entry.count++;
+            return;
+        }
+        entry = new Entry(key, stage, line);
+        keptEntries.put(key, entry);
+        if (head.size() < limit / 2) {
+            head.add(entry);
+            return;
+        }
+        tail.addLast(entry);
+        if (tail.size() > limit - limit / 2) {
+            Entry evicted = tail.removeFirst();
+            keptEntries.remove(evicted.key);
+            omittedLines += evicted.count;
+        }
+    }
+
+    /**
+     * Restore the summary stored by an earlier run, e.g. when a repository is resumed. The lines are kept as they are.
+     * @param summary The summary returned by getSummary, may be null.
+     * @param summarizedLines The number of lines the summary was made of.
+     */
+    public synchronized void restore(List<String> summary, long summarizedLines) {
+        if (summary == null)
+            return;
+        long restoredLines = lines;
+        for (String line : summary) {
+            Entry entry = new Entry(line, null, line);
+            if (keptEntries.putIfAbsent(line, entry) == null)
+                head.add(entry);
+        }
+        lines = restoredLines + Math.max(summarizedLines, summary.size());
+    }
+
+    /**
+     * @return The distinct lines formatted as "[STAGE] line", followed by " (N times)" for repeated lines.
+     * A marker line tells how many lines were left out between the first and the latest ones.
+     */
+    public synchronized List<String> getSummary() {
+        List<String> summary = new ArrayList<>(head.size() + tail.size() + 1);
+        for (Entry entry : head)
+            summary.add(entry.format());
+        if (omittedLines > 0)
+            summary.add("... " + omittedLines + " lines omitted" + (sidecarPath != null ? ", see " + sidecarPath : ""));
+        for (Entry entry : tail)
+            summary.add(entry.format());
+        return summary;
+    }
+
+    /**
+     * @return The number of lines added, including the repeated and omitted ones.
+     */
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    /**
+     * @return The path of the sidecar file, null if no line was written to it by this or the resumed run.
+     */
+    public synchronized String getSidecarPath() {
+        if (sidecar != null || (append && sidecarPath != null && Files.exists(Paths.get(sidecarPath))))
+            return sidecarPath;
+        return null;
+    }
+
+    private void writeSidecar(String stage, String line) {
+        if (sidecarPath == null || sidecarFailed)
+            return;
+        if (sidecar == null) {
+            try {
+                sidecar = new ProcessOutputLog(sidecarPath, compress, append);
+            } catch (IOException e) {
+                sidecarFailed = true;
+                System.err.println("Couldn't open the error log " + sidecarPath);
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+        sidecar.write(stage != null ? stage : "COORDINATOR", line);
+    }
+
+    /**
+     * Close the sidecar file. Lines added afterwards are only summarized.
+     */
+    public synchronized void close() {
+        if (sidecar != null)
+            sidecar.close();
+        sidecarFailed = true;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String stage;
+        private final String line;
+        private long count = 1;
+
+        private Entry(String key, String stage, String line) {
+            this.key = key;
+            this.stage = stage;
+            this.line = line;
+        }
+
+        private String format() {
+            String formatted = stage != null ? "[" + stage + "] " + line : line;
+            return count > 1 ? formatted + " (" + count + " times)" : formatted;
+        }
+    }
+}
@@ -3,9 +3,12 @@ package utils;
 import main.Config;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -46,6 +49,42 @@ public class FileHelper {
         }
     }
 
+    public static String getProgressJournalFilePath() {
+        if (Config.FILEPATH.isEmpty()) {
+            return System.getProperty("user.dir") + "/" + Config.PROGRESSFILENAME;
+        } else {
+            return Config.FILEPATH + "/" + Config.PROGRESSFILENAME;
+        }
+    }
+
+    /**
+     * @param repositoryId The id of the repository.
+     * @param repositoryName The name of the repository.
+     * @return The path to the file holding the output of all processes started for the repository.
+     */
+    public static String getProcessLogFilePath(long repositoryId, String repositoryName) {
+        String fileName = repositoryId + "-" + repositoryName + (Config.PROCESSLOGS.equals("GZIP") ? ".log.gz" : ".log");
+        if (Config.FILEPATH.isEmpty()) {
+            return System.getProperty("user.dir") + "/logs/" + fileName;
+        } else {
+            return Config.FILEPATH + "/logs/" + fileName;
+        }
+    }
+
+    /**
+     * @param repositoryId The id of the repository.
+     * @param repositoryName The name of the repository.
+     * @return The path to the file holding all error messages of the repository.
+     */
+    public static String getErrorLogFilePath(long repositoryId, String repositoryName) {
+        String fileName = repositoryId + "-" + repositoryName + (Config.PROCESSLOGS.equals("GZIP") ? ".errors.log.gz" : ".errors.log");
+        if (Config.FILEPATH.isEmpty()) {
+            return System.getProperty("user.dir") + "/logs/" + fileName;
+        } else {
+            return Config.FILEPATH + "/logs/" + fileName;
+        }
+    }
+
     public static List<String> getAllFileNamesOfDir(String dir) {
         try (Stream<Path> walk = Files.walk(Paths.get(dir))) {
 
@@ -56,4 +95,43 @@ public class FileHelper {
         }
         return null;
     }
+
+    /**
+     * @param dir The directory.
+     * @return The summed size of all regular files within the directory and its subdirectories in bytes, 0 if it cannot be read.
+     */
+    public static long getDirectorySize(String dir) {
+        try (Stream<Path> walk = Files.walk(Paths.get(dir))) {
+            return walk.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Delete a directory with all of its contents, like "rm -rf". Symbolic links are deleted, not followed.
+     * @param dir The directory.
+     * @return True if the directory does not exist anymore.
+     */
+    public static boolean deleteDirectory(String dir) {
+        Path root = Paths.get(dir);
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS))
+            return true;
+        try (Stream<Path> walk = Files.walk(root)) {
+            // Children are sorted behind their parents, hence the reversed order deletes them first.
+            for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.deleteIfExists(path);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Couldn't delete " + dir);
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
 }
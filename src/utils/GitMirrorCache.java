@@ -0,0 +1,118 @@
+package utils;
+
+import main.Config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent cache of bare git mirrors holding the branches and tags of the remote repositories.
+ * Repositories are mirrored by their id (e.g. mirrors/45717250.git), submodules by the hash of their url
+ * (e.g. mirrors/modules/3f2a...git). Workspaces are cloned from the mirrors, so that only new commits have to be
+ * fetched over the network when a repository is processed again.
+ */
+public class GitMirrorCache {
+
+    // Branches and tags, fetched into the same refs of the bare mirror.
+    public static final String[] MIRROR_REFSPECS = {"+refs/heads/*:refs/heads/*", "+refs/tags/*:refs/tags/*"};
+
+    private static final ConcurrentHashMap<String, ReentrantLock> MIRROR_LOCKS = new ConcurrentHashMap<>();
+    private static final Pattern SUBMODULE_SECTION = Pattern.compile("^\\s*\\[submodule\\s+\"(.*)\"\\s*]\\s*$");
+    private static final Pattern SUBMODULE_KEY = Pattern.compile("^\\s*(path|url)\\s*=\\s*(.*?)\\s*$");
+
+    public static boolean isEnabled() {
+        return !Config.GITMIRRORPATH.isEmpty();
+    }
+
+    public static String getRepositoryMirror(long repositoryId) {
+        return Config.GITMIRRORPATH + "/" + repositoryId + ".git";
+    }
+
+    public static String getSubmoduleMirror(String url) {
+        return Config.GITMIRRORPATH + "/modules/" + sha1(url) + ".git";
+    }
+
+    /**
+     * Lock a mirror, so that it is not created or updated by two workers at the same time.
+     * The returned lock must be unlocked by the caller.
+     * @param mirror Path to the mirror.
+     * @return The locked lock.
+     */
+    public static ReentrantLock lock(String mirror) {
+        ReentrantLock lock = MIRROR_LOCKS.computeIfAbsent(mirror, path -> new ReentrantLock());
+        lock.lock();
+        return lock;
+    }
+
+    public static boolean mirrorExists(String mirror) {
+        return Files.isDirectory(Paths.get(mirror));
+    }
+
+    /**
+     * Read the submodules with an absolute url from the .gitmodules file of a workspace.
+     * Submodules with relative urls are skipped, they are cloned the usual way.
+     * @param workspace The folder the repository was cloned into.
+     * @return The url of each submodule, keyed by the submodule path.
+     */
+    public static Map<String, String> getSubmodules(String workspace) {
+        Map<String, String> submodules = new LinkedHashMap<>();
+        Path gitmodules = Paths.get(workspace, ".gitmodules");
+        if (!Files.exists(gitmodules))
+            return submodules;
+
+        try {
+            List<String> lines = Files.readAllLines(gitmodules, StandardCharsets.UTF_8);
+            String path = null;
+            String url = null;
+            for (String line : lines) {
+                if (SUBMODULE_SECTION.matcher(line).matches()) {
+                    addSubmodule(submodules, path, url);
+                    path = null;
+                    url = null;
+                    continue;
+                }
+                Matcher key = SUBMODULE_KEY.matcher(line);
+                if (key.matches()) {
+                    if (key.group(1).equals("path"))
+                        path = key.group(2);
+                    else
+                        url = key.group(2);
+                }
+            }
+            addSubmodule(submodules, path, url);
+        } catch (IOException e) {
+            System.err.println("Couldn't read " + gitmodules);
+            System.err.println(e.getMessage());
+        }
+        return submodules;
+    }
+
+    private static void addSubmodule(Map<String, String> submodules, String path, String url) {
+        if (path != null && url != null && !url.startsWith("./") && !url.startsWith("../"))
+            submodules.put(path, url);
+    }
+
+    private static String sha1(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest)
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
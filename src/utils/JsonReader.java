@@ -1,12 +1,21 @@
 package utils;
 
 import Models.RMetaData;
+import Models.RepositorySummary;
 import com.google.gson.*;
+import com.google.gson.stream.JsonToken;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Simple Json file reader.
+ * Repositories are read one at a time through a byte offset index of the repositories.json file (see {@link RepositoryIndex}),
+ * so neither the heap usage nor the startup time depend on the number of repositories within the file.
+ * Results that were appended to the results.json file but not compacted yet take precedence, they are read through the
+ * {@link ResultStore}. All accesses are synchronized on the single instance, since several ContainerCoordinators may read
+ * and update repositories at the same time. The ResultStore is never called while holding that lock, since compacting
+ * locks the ResultStore first and the JsonReader second.
  *
  * @author Daniel Braun
  */
@@ -17,18 +26,20 @@ public class JsonReader {
     private static JsonReader single_instance = null;
     private Gson gson;
     private boolean isNewFile;
+    private RepositoryIndex repositoryIndex;
+    // Only parsed on demand by getJsonArray().
     private JsonArray repositoriesJsonArray;
 
     private JsonReader()  {
-        gson = new Gson();
+        gson = RMetaDataTypeAdapter.getGson();
         repositoriesJsonPathAndName = FileHelper.getRepositoriesJsonFilePath();
 
         isNewFile = FileHelper.fileExistsOrCreate(repositoriesJsonPathAndName);
-        repositoriesJsonArray = readJsonArrayFromFile(repositoriesJsonPathAndName);
+        loadIndex();
     }
 
     // static method to create instance of Singleton class
-    public static JsonReader getInstance()
+    public static synchronized JsonReader getInstance()
     {
         if (single_instance == null)
             single_instance = new JsonReader();
@@ -63,20 +74,133 @@ public class JsonReader {
     }
 
     public RMetaData deserializeRepositoryFromJsonArray(int arrayIndex){
-        if(repositoriesJsonArray.size() > arrayIndex) {
-            JsonElement jsonElement = repositoriesJsonArray.get(arrayIndex);
-            if(!jsonElement.isJsonNull())
-                return gson.fromJson(jsonElement.toString(), RMetaData.class);
+        RMetaData result = readResult(arrayIndex);
+        if(result != null)
+            return result;
+        return deserializeRepository(arrayIndex);
+    }
+
+    private synchronized RMetaData deserializeRepository(int arrayIndex){
+        refreshIndexIfStale();
+        if(isArgInRange(arrayIndex)) {
+            try {
+                com.google.gson.stream.JsonReader elementReader = openElement(arrayIndex);
+                if(elementReader.peek() != JsonToken.NULL)
+                    return gson.fromJson(elementReader, RMetaData.class);
+            } catch (IOException e) {
+                System.err.println("Couldn't read repository at index " + arrayIndex + " from " + repositoriesJsonPathAndName);
+                System.err.println(e.getMessage());
+                return null;
+            }
         }
         System.err.println("Array index out of bound of JsonArray.");
         return null;
     }
 
+    /**
+     * Read the fields of a repository required to select and order the repositories of a run, without deserializing the whole
+     * repository. Only the names at the top level of the repository are looked at and every other value is skipped,
+     * hence text within e.g. the description or the error messages can't be mistaken for a field.
+     * @param arrayIndex The index within the repositories.json file.
+     * @return The summary or null if the repository is null or can not be read.
+     */
+    public RepositorySummary readRepositorySummary(int arrayIndex) {
+        byte[] result = isArgInRange(arrayIndex) ? ResultStore.getInstance().readRawResult(arrayIndex) : null;
+        if (result != null) {
+            try {
+                com.google.gson.stream.JsonReader resultReader = new com.google.gson.stream.JsonReader(
+                        new InputStreamReader(new ByteArrayInputStream(result), StandardCharsets.UTF_8));
+                resultReader.beginObject();
+                while (resultReader.hasNext()) {
+                    if (resultReader.nextName().equals("repository"))
+                        return readSummary(resultReader);
+                    resultReader.skipValue();
+                }
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Couldn't read the result for index " + arrayIndex);
+                System.err.println(e.getMessage());
+                return null;
+            }
+        }
+        return readRepositorySummaryFromFile(arrayIndex);
+    }
+
+    private synchronized RepositorySummary readRepositorySummaryFromFile(int arrayIndex) {
+        refreshIndexIfStale();
+        if (!isArgInRange(arrayIndex)) {
+            System.err.println("Array index out of bound of JsonArray.");
+            return null;
+        }
+        try {
+            return readSummary(openElement(arrayIndex));
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Couldn't read repository at index " + arrayIndex + " from " + repositoriesJsonPathAndName);
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    private static RepositorySummary readSummary(com.google.gson.stream.JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL)
+            return null;
+        RepositorySummary summary = new RepositorySummary();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "size":
+                    summary.setSize(reader.nextInt());
+                    break;
+                case "buildStatus":
+                    summary.setBuildStatus(reader.nextString());
+                    break;
+                case "stageMetrics":
+                    summary.setMeasuredMillis(readMeasuredMillis(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return summary;
+    }
+
+    /**
+     * @return The summed wall time of the stage metrics array at the position of the reader.
+     */
+    private static long readMeasuredMillis(com.google.gson.stream.JsonReader reader) throws IOException {
+        long millis = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("wallTimeMillis") && reader.peek() == JsonToken.NUMBER)
+                    millis += reader.nextLong();
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return millis;
+    }
+
     public String getRepositoryStringFromJsonArray(int arrayIndex) {
-        reloadJsonArrayFromFile();
-        if(repositoriesJsonArray.size() > arrayIndex) {
-            JsonElement jsonElement = repositoriesJsonArray.get(arrayIndex);
-            if(!jsonElement.isJsonNull())
+        RMetaData result = readResult(arrayIndex);
+        if(result != null)
+            return gson.toJson(result, RMetaData.class);
+        return getRepositoryString(arrayIndex);
+    }
+
+    private synchronized String getRepositoryString(int arrayIndex) {
+        refreshIndexIfStale();
+        if(isArgInRange(arrayIndex)) {
+            JsonElement jsonElement = getJsonElement(arrayIndex);
+            if(jsonElement != null && !jsonElement.isJsonNull())
                 return jsonElement.toString();
         }
         System.err.println("Array index out of bound of JsonArray.");
@@ -84,30 +208,114 @@ public class JsonReader {
     }
 
     public JsonObject getRepositoryJsonObjectFromJsonArray(int arrayIndex) {
-        reloadJsonArrayFromFile();
-        if(repositoriesJsonArray.size() > arrayIndex) {
-            JsonObject jsonObject = repositoriesJsonArray.get(arrayIndex).getAsJsonObject();
-            if(!jsonObject.isJsonNull())
-                return jsonObject;
+        RMetaData result = readResult(arrayIndex);
+        if(result != null)
+            return gson.toJsonTree(result, RMetaData.class).getAsJsonObject();
+        return getRepositoryJsonObject(arrayIndex);
+    }
+
+    private synchronized JsonObject getRepositoryJsonObject(int arrayIndex) {
+        refreshIndexIfStale();
+        if(isArgInRange(arrayIndex)) {
+            JsonElement jsonElement = getJsonElement(arrayIndex);
+            if(jsonElement != null && jsonElement.isJsonObject())
+                return jsonElement.getAsJsonObject();
         }
         System.err.println("Array index out of bound of JsonArray.");
         return null;
     }
 
-    public JsonArray getJsonArray(){
+    /**
+     * Read the unparsed json of a repository as it is stored within the repositories.json file,
+     * ignoring results that have not been compacted yet.
+     * @param arrayIndex The index within the repositories.json file.
+     * @return The UTF-8 encoded json of the repository.
+     */
+    public synchronized byte[] readRawRepository(int arrayIndex) throws IOException {
+        refreshIndexIfStale();
+        return repositoryIndex.readElement(arrayIndex);
+    }
+
+    /**
+     * Parse the whole repositories.json file into a JsonArray. This is expensive for large files
+     * and only required when the whole array is rewritten by the JsonWriter.
+     * @return The parsed JsonArray.
+     */
+    public synchronized JsonArray getJsonArray(){
+        refreshIndexIfStale();
+        if (repositoriesJsonArray == null)
+            repositoriesJsonArray = repositoryIndex.size() > 0 ? readJsonArrayFromFile(repositoriesJsonPathAndName) : new JsonArray();
         return repositoriesJsonArray;
     }
 
-    public void checkArgInRange(int arrayIndex) {
-        if(arrayIndex > repositoriesJsonArray.size()) {
+    public synchronized int getRepositoryCount() {
+        return repositoryIndex.size();
+    }
+
+    public synchronized boolean isArgInRange(int arrayIndex) {
+        return arrayIndex >= 0 && arrayIndex < repositoryIndex.size();
+    }
+
+    public synchronized void checkArgInRange(int arrayIndex) {
+        if(!isArgInRange(arrayIndex)) {
             System.err.println("ERROR: Index out of bounds.\nThe repositories.json maximum array size is "
-                    + repositoriesJsonArray.size()+ ".\nThe provided number '"
+                    + repositoryIndex.size()+ ".\nThe provided number '"
                     + arrayIndex +"' is out of bounds.\nAborting.");
             System.exit(1);
         }
     }
 
-    private void reloadJsonArrayFromFile() {
-        repositoriesJsonArray = readJsonArrayFromFile(repositoriesJsonPathAndName);
+    /**
+     * @return The result appended to the results.json file for an index within the repositories.json file, null if there is none.
+     */
+    private RMetaData readResult(int arrayIndex) {
+        if (!isArgInRange(arrayIndex))
+            return null;
+        return ResultStore.getInstance().readResult(arrayIndex);
+    }
+
+    private JsonElement getJsonElement(int arrayIndex) {
+        try {
+            return new JsonParser().parse(openElement(arrayIndex));
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Couldn't read repository at index " + arrayIndex + " from " + repositoriesJsonPathAndName);
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Open a streaming reader positioned at the start of a single array element.
+     * Older crawler versions stored each repository as an escaped json string, these are unwrapped transparently.
+     */
+    private com.google.gson.stream.JsonReader openElement(int arrayIndex) throws IOException {
+        byte[] element = repositoryIndex.readElement(arrayIndex);
+        com.google.gson.stream.JsonReader elementReader = new com.google.gson.stream.JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(element), StandardCharsets.UTF_8));
+        if (elementReader.peek() == JsonToken.STRING)
+            elementReader = new com.google.gson.stream.JsonReader(new StringReader(elementReader.nextString()));
+        return elementReader;
+    }
+
+    private void loadIndex() {
+        try {
+            repositoryIndex = RepositoryIndex.loadOrBuild(repositoriesJsonPathAndName);
+        } catch (IOException e) {
+            System.err.println("Couldn't index " + repositoriesJsonPathAndName + ".\n Shutting down.");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Rebuild the index if the repositories.json file was changed, e.g. by the JsonWriter, a compaction or another process.
+     */
+    private void refreshIndexIfStale() {
+        if (repositoryIndex.isStale()) {
+            repositoryIndex.close();
+            repositoriesJsonArray = null;
+            isNewFile = false;
+            loadIndex();
+        }
     }
 }
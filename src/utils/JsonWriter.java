@@ -2,7 +2,6 @@ package utils;
 
 import Models.RMetaData;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
@@ -25,13 +24,13 @@ public class JsonWriter {
 
 
     private JsonWriter()  {
-        gson = new GsonBuilder().create();
+        gson = RMetaDataTypeAdapter.getGson();
         repositoriesJsonPathAndName = FileHelper.getRepositoriesJsonFilePath();
         isNewFile = FileHelper.fileExistsOrCreate(repositoriesJsonPathAndName);
     }
 
     // static method to create instance of Singleton class
-    public static JsonWriter getInstance()
+    public static synchronized JsonWriter getInstance()
     {
         if (single_instance == null)
             single_instance = new JsonWriter();
@@ -64,8 +63,12 @@ public class JsonWriter {
     }
 
     public void updateRepositoryInJsonArray (RMetaData rMetaData, int arrayIndex){
-        JsonArray jsonArray = JsonReader.getInstance().getJsonArray();
-        jsonArray.set(arrayIndex, gson.toJsonTree(rMetaData, RMetaData.class));
-        writeToFile(jsonArray);
+        JsonReader jsonReader = JsonReader.getInstance();
+        // Lock the reader, which owns the shared JsonArray, so that no other thread reads or writes it meanwhile.
+        synchronized (jsonReader) {
+            JsonArray jsonArray = jsonReader.getJsonArray();
+            jsonArray.set(arrayIndex, gson.toJsonTree(rMetaData, RMetaData.class));
+            writeToFile(jsonArray);
+        }
     }
 }
@@ -0,0 +1,259 @@
+package utils;
+
+import main.Config;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the repositories between several coordinator processes (on one or many hosts) sharing the Config.FILEPATH folder.
+ * Before a repository is processed, its index is claimed by creating the lease file leases/<index>.lease exclusively.
+ * The owner keeps touching its lease files (heartbeat). A lease that was not touched for Config.LEASESECONDS belongs to a
+ * process that died and may be reclaimed by any other process, one at a time (leases/<index>.takeover). Finished indices
+ * are marked by a leases/<index>.done file.
+ * The hosts must have synchronized clocks, since the expiry compares the modification time of the lease with the local time.
+ */
+public class LeaseManager {
+
+    // static variable single_instance of type Singleton
+    private static LeaseManager single_instance = null;
+
+    private final Path leaseDirectory;
+    // Unique per process, so that a process notices if one of its leases was reclaimed by another one.
+    private final String owner;
+    private final Set<Integer> heldLeases = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService heartbeat;
+
+    private LeaseManager() {
+        leaseDirectory = Paths.get(Config.FILEPATH.isEmpty() ? System.getProperty("user.dir") : Config.FILEPATH, "leases");
+        owner = Config.NODEID + "/" + ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        try {
+            Files.createDirectories(leaseDirectory);
+        } catch (IOException e) {
+            System.err.println("Couldn't create the lease folder " + leaseDirectory);
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatSeconds = Math.max(1, Config.LEASESECONDS / 3);
+        heartbeat.scheduleAtFixedRate(this::renewLeases, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    // static method to create instance of Singleton class
+    public static synchronized LeaseManager getInstance()
+    {
+        if (single_instance == null)
+            single_instance = new LeaseManager();
+
+        return single_instance;
+    }
+
+    /**
+     * Try to claim a repository for this process.
+     * @param arrayIndex The index within the repositories.json file.
+     * @return True if this process holds the lease now. False if the index is finished or leased by a live process.
+     */
+    public boolean claim(int arrayIndex) {
+        if (Files.exists(getDoneFile(arrayIndex)))
+            return false;
+        if (tryCreateLease(arrayIndex))
+            return true;
+        if (!isExpired(getLeaseFile(arrayIndex)))
+            return false;
+
+        // Takeovers of an index are serialized by a second lock file. Otherwise two processes could both find the lease
+        // expired, the first one could replace it by its own lease and the second one would remove that fresh lease.
+        Path takeoverLock = getTakeoverFile(arrayIndex);
+        if (!tryCreateTakeoverLock(takeoverLock))
+            return false;
+        try {
+            // Check again, the lease may have been reclaimed by the previous holder of the takeover lock. The lock itself
+            // may have been replaced by a process that found it expired at the same time, the later one wins.
+            Path lease = getLeaseFile(arrayIndex);
+            if (!isExpired(lease) || !owner.equals(readOwner(takeoverLock)))
+                return false;
+            String expiredOwner = readOwner(lease);
+            if (Files.deleteIfExists(lease))
+                System.out.println("Reclaiming the expired lease of index " + arrayIndex + " held by " + expiredOwner);
+            return !Files.exists(getDoneFile(arrayIndex)) && tryCreateLease(arrayIndex);
+        } catch (IOException e) {
+            System.err.println("Couldn't reclaim the expired lease of index " + arrayIndex);
+            System.err.println(e.getMessage());
+            return false;
+        } finally {
+            try {
+                if (owner.equals(readOwner(takeoverLock)))
+                    Files.deleteIfExists(takeoverLock);
+            } catch (IOException e) {
+                System.err.println("Couldn't delete the takeover lock of index " + arrayIndex);
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Mark a claimed repository as finished and give up its lease.
+     * @param arrayIndex The index within the repositories.json file.
+     */
+    public void complete(int arrayIndex) {
+        if (!heldLeases.contains(arrayIndex))
+            return;
+        try {
+            Files.write(getDoneFile(arrayIndex), owner.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Couldn't mark index " + arrayIndex + " as finished");
+            System.err.println(e.getMessage());
+        }
+        release(arrayIndex);
+    }
+
+    /**
+     * Give up the lease of a repository without finishing it, so that another process may claim it. Does nothing if
+     * this process does not hold the lease.
+     * @param arrayIndex The index within the repositories.json file.
+     */
+    public void release(int arrayIndex) {
+        if (!heldLeases.remove(arrayIndex))
+            return;
+        try {
+            if (owner.equals(readOwner(getLeaseFile(arrayIndex))))
+                Files.deleteIfExists(getLeaseFile(arrayIndex));
+        } catch (IOException e) {
+            System.err.println("Couldn't delete the lease of index " + arrayIndex);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Release all leases and stop the heartbeat. Must be called before the application terminates.
+     */
+    public void close() {
+        heartbeat.shutdownNow();
+        for (int arrayIndex : heldLeases)
+            release(arrayIndex);
+    }
+
+    private boolean tryCreateLease(int arrayIndex) {
+        try {
+            Files.write(getLeaseFile(arrayIndex), owner.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            heldLeases.add(arrayIndex);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (IOException e) {
+            System.err.println("Couldn't create the lease of index " + arrayIndex);
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return True if this process may take over the expired lease now.
+     */
+    private boolean tryCreateTakeoverLock(Path takeoverLock) {
+        try {
+            Files.write(takeoverLock, owner.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            // A takeover takes milliseconds. A lock as old as a lease was left behind by a process that died during its
+            // takeover. It is replaced by renaming a lock of this process onto it, never deleted, since a process that
+            // found it expired as well may have replaced it by a fresh lock in the meantime. Of several processes
+            // replacing it at once, only the one whose lock remains continues.
+            return isExpired(takeoverLock) && replaceTakeoverLock(takeoverLock) && owner.equals(readOwner(takeoverLock));
+        } catch (IOException e) {
+            System.err.println("Couldn't create the takeover lock " + takeoverLock);
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean replaceTakeoverLock(Path takeoverLock) {
+        Path ownLock = null;
+        try {
+            ownLock = Files.createTempFile(leaseDirectory, takeoverLock.getFileName().toString(), ".tmp");
+            Files.write(ownLock, owner.getBytes(StandardCharsets.UTF_8));
+            Files.move(ownLock, takeoverLock, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Couldn't replace the expired takeover lock " + takeoverLock);
+            System.err.println(e.getMessage());
+            try {
+                if (ownLock != null)
+                    Files.deleteIfExists(ownLock);
+            } catch (IOException ignored) {
+                // Only a stray temporary file.
+            }
+            return false;
+        }
+    }
+
+    private void renewLeases() {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        for (int arrayIndex : heldLeases) {
+            Path lease = getLeaseFile(arrayIndex);
+            try {
+                if (owner.equals(readOwner(lease))) {
+                    Files.setLastModifiedTime(lease, now);
+                } else {
+                    // The lease expired (e.g. the host was suspended) and another process reclaimed it.
+                    System.err.println("Lost the lease of index " + arrayIndex + ". It may be processed twice.");
+                    heldLeases.remove(arrayIndex);
+                }
+            } catch (IOException e) {
+                System.err.println("Couldn't renew the lease of index " + arrayIndex);
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    private boolean isExpired(Path lease) {
+        try {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(lease).toMillis();
+            return age > TimeUnit.SECONDS.toMillis(Config.LEASESECONDS);
+        } catch (NoSuchFileException e) {
+            // Released in the meantime, try again.
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String readOwner(Path lease) {
+        try {
+            return new String(Files.readAllBytes(lease), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Path getLeaseFile(int arrayIndex) {
+        return leaseDirectory.resolve(arrayIndex + ".lease");
+    }
+
+    private Path getTakeoverFile(int arrayIndex) {
+        return leaseDirectory.resolve(arrayIndex + ".takeover");
+    }
+
+    private Path getDoneFile(int arrayIndex) {
+        return leaseDirectory.resolve(arrayIndex + ".done");
+    }
+}
@@ -0,0 +1,51 @@
+package utils;
+
+/**
+ * The repository and stage the current thread is working on, attached to every log record and process output line.
+ * Threads inherit the context of the thread that started them, e.g. the extraction workers and the output pumps of a process.
+ */
+public final class LogContext {
+
+    private static final InheritableThreadLocal<LogContext> CURRENT = new InheritableThreadLocal<>();
+
+    private final long repositoryId;
+    private final String stage;
+
+    private LogContext(long repositoryId, String stage) {
+        this.repositoryId = repositoryId;
+        this.stage = stage;
+    }
+
+    public static void set(long repositoryId, String stage) {
+        CURRENT.set(new LogContext(repositoryId, stage));
+    }
+
+    /**
+     * @return The context of the current thread, null if it works on no repository.
+     */
+    public static LogContext get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param context A context returned by get, may be null.
+     */
+    public static void restore(LogContext context) {
+        if (context == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(context);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public long getRepositoryId() {
+        return repositoryId;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+}
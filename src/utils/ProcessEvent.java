@@ -0,0 +1,70 @@
+package utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import main.Config;
+
+/**
+ * Java Flight Recorder event covering a single external process started by the pipeline.
+ * Only created if jfrEvents is enabled within the config.properties file, otherwise begin returns null and commit does nothing.
+ */
+@Name("containercoordinator.Process")
+@Label("External Process")
+@Category("ContainerCoordinator")
+@Description("An external process started by the container pipeline")
+public class ProcessEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Repository Id")
+    long repositoryId;
+
+    @Label("Command")
+    String command;
+
+    @Label("Exit Code")
+    int exitCode;
+
+    @Label("CPU Time (ms)")
+    long cpuTimeMillis;
+
+    /**
+     * Start timing a process.
+     * @param stage The stage the process belongs to.
+     * @param repositoryId The id of the repository the process runs for.
+     * @param command The command and its arguments.
+     * @return The started event or null if JFR events are disabled.
+     */
+    public static ProcessEvent begin(String stage, long repositoryId, String... command) {
+        if (!Config.JFREVENTS)
+            return null;
+        ProcessEvent event = new ProcessEvent();
+        event.stage = stage;
+        event.repositoryId = repositoryId;
+        event.command = String.join(" ", command);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finish and commit a process event.
+     * @param event The event returned by begin, may be null.
+     * @param exitCode The exit code of the process.
+     * @param processMetrics The measurements of the process, may be null.
+     */
+    public static void commit(ProcessEvent event, int exitCode, ProcessMetrics processMetrics) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.exitCode = exitCode;
+            if (processMetrics != null)
+                event.cpuTimeMillis = processMetrics.getCpuTimeMillis();
+            event.commit();
+        }
+    }
+}
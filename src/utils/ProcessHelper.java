@@ -1,46 +1,175 @@
 package utils;
 
-import main.ContainerCoordinator;
-
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class ProcessHelper {
 
-    public static int executeProcess(ProcessBuilder processBuilder, ContainerCoordinator containerCoordinator) {
+    // Same exit code as the coreutils timeout command.
+    public static final int TIMEOUT_EXIT_CODE = 124;
+    // Time granted to the pumps to read the remaining output after the process terminated.
+    private static final long PUMP_JOIN_MILLIS = 10000;
+
+    public static int executeProcess(ProcessBuilder processBuilder, ProcessOutputSink outputSink) {
+        return executeProcess(processBuilder, outputSink, 0);
+    }
+
+    /**
+     * Execute a process and wait for it to terminate.
+     * @param processBuilder The configured ProcessBuilder.
+     * @param outputSink Receives the output of the process, e.g. the ContainerCoordinator.
+     * @param timeoutSeconds Maximum runtime of the process in seconds, 0 or less to wait forever. On expiry the process
+     *                       and all of its descendants are killed.
+     * @return The exit code of the process or TIMEOUT_EXIT_CODE if the timeout expired.
+     */
+    public static int executeProcess(ProcessBuilder processBuilder, ProcessOutputSink outputSink, long timeoutSeconds) {
+        return executeProcess(processBuilder, outputSink, timeoutSeconds, null);
+    }
+
+    /**
+     * Execute a process and wait for it to terminate, while measuring the resource usage of the process tree.
+     * @param processBuilder The configured ProcessBuilder.
+     * @param outputSink Receives the output of the process, e.g. the ContainerCoordinator.
+     * @param timeoutSeconds Maximum runtime of the process in seconds, 0 or less to wait forever.
+     * @param processMetrics Filled with the wall time, CPU time and peak RSS of the process tree. May be null.
+     * @return The exit code of the process or TIMEOUT_EXIT_CODE if the timeout expired.
+     */
+    public static int executeProcess(ProcessBuilder processBuilder, ProcessOutputSink outputSink, long timeoutSeconds, ProcessMetrics processMetrics) {
+        return executeProcess(processBuilder, null, outputSink, timeoutSeconds, processMetrics);
+    }
+
+    /**
+     * Execute a command directly, without a wrapping shell, and wait for it to terminate.
+     * @param command The command, its working directory and environment.
+     * @param outputSink Receives the output of the process, e.g. the ContainerCoordinator.
+     * @param timeoutSeconds Maximum runtime of the process in seconds, 0 or less to wait forever.
+     * @param processMetrics Filled with the wall time, CPU time and peak RSS of the process tree. May be null.
+     * @return The exit code of the process or TIMEOUT_EXIT_CODE if the timeout expired.
+     */
+    public static int executeProcess(Command command, ProcessOutputSink outputSink, long timeoutSeconds, ProcessMetrics processMetrics) {
+        return executeProcess(command.toProcessBuilder(), command.getAnswer(), outputSink, timeoutSeconds, processMetrics);
+    }
+
+    private static int executeProcess(ProcessBuilder processBuilder, String answer, ProcessOutputSink outputSink, long timeoutSeconds, ProcessMetrics processMetrics) {
         try {
             Process process = processBuilder.start();
+            Thread sampler = processMetrics != null ? processMetrics.startSampling(process) : null;
+            if (answer != null)
+                startAnswering(process.getOutputStream(), answer);
 
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()));
+            LogContext context = LogContext.get();
+            String stage = context != null ? context.getStage() : "PROCESS";
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-                if(line.contains("Downloaded recipe")) {
-                    containerCoordinator.getConanDependencies().add(line.substring(0, line.indexOf(":")));
-                }
-            }
+            // Both pipes must be drained at the same time. Otherwise a child process that fills the stderr pipe buffer
+            // blocks forever while we are still waiting for it to close stdout.
+            Thread errorPump = startPump(process.getErrorStream(), line -> outputSink.onError(stage, line));
+            Thread outputPump = startPump(process.getInputStream(), line -> outputSink.onOutput(stage, line));
 
-            BufferedReader reader2 = new BufferedReader(
-                    new InputStreamReader(process.getErrorStream()));
-
-            String line2;
-            while ((line2 = reader2.readLine()) != null) {
-                containerCoordinator.getErrorMessages().add(line2);
+            try {
+                int exitVal;
+                if (timeoutSeconds <= 0) {
+                    exitVal = process.waitFor();
+                } else if (process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                    exitVal = process.exitValue();
+                } else {
+                    System.err.println("TIMEOUT: Process exceeded " + timeoutSeconds + " seconds: " + String.join(" ", processBuilder.command()));
+                    killProcessTree(process);
+                    exitVal = TIMEOUT_EXIT_CODE;
+                }
+                if (sampler != null)
+                    processMetrics.stopSampling(sampler);
+                // Descendants that escaped the kill (e.g. daemonized ones) may still hold the pipes open,
+                // hence do not wait for the pumps forever.
+                long pumpDeadline = System.currentTimeMillis() + PUMP_JOIN_MILLIS;
+                outputPump.join(PUMP_JOIN_MILLIS);
+                errorPump.join(Math.max(1, pumpDeadline - System.currentTimeMillis()));
+                return exitVal;
+            } catch (InterruptedException e) {
+                killProcessTree(process);
+                if (sampler != null)
+                    processMetrics.stopSampling(sampler);
+                throw e;
             }
 
-            return process.waitFor();
-
         } catch (IOException e) {
             System.err.println("Internal process IOException error");
             System.err.println(e.getMessage());
+            outputSink.onStartFailure(e.getMessage());
             return 1;
         } catch (InterruptedException e) {
             System.err.println("Internal process InterruptedException error");
             System.err.println(e.getMessage());
+            Thread.currentThread().interrupt();
             return 1;
         }
     }
+
+    /**
+     * Kill a process together with all of its descendants, e.g. the compiler processes started by "cmake --build".
+     * The descendants are collected first, since they are re-parented once their parent is gone.
+     * @param process The root of the process tree.
+     */
+    public static void killProcessTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroyForcibly();
+        for (ProcessHandle descendant : descendants) {
+            descendant.destroyForcibly();
+        }
+        try {
+            process.waitFor(PUMP_JOIN_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread startPump(InputStream inputStream, Consumer<String> lineConsumer) {
+        Thread pump = new Thread(() -> {
+            try {
+                drain(inputStream, lineConsumer);
+            } catch (IOException e) {
+                System.err.println("Internal process IOException error");
+                System.err.println(e.getMessage());
+            }
+        }, "process-pump-" + Thread.currentThread().getName());
+        pump.setDaemon(true);
+        pump.start();
+        return pump;
+    }
+
+    /**
+     * Write the answer to stdin over and over again, like "yes answer | tool". The thread ends with the first failing
+     * write, i.e. once the process terminated or closed stdin.
+     */
+    private static void startAnswering(OutputStream outputStream, String answer) {
+        byte[] line = (answer + "\n").getBytes(StandardCharsets.UTF_8);
+        Thread feeder = new Thread(() -> {
+            try (OutputStream stdin = outputStream) {
+                while (true) {
+                    stdin.write(line);
+                    stdin.flush();
+                }
+            } catch (IOException e) {
+                // Broken pipe, nobody is reading anymore.
+            }
+        }, "process-stdin-" + Thread.currentThread().getName());
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+
+    private static void drain(InputStream inputStream, Consumer<String> lineConsumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
+            }
+        }
+    }
 }
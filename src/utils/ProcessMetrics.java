@@ -0,0 +1,156 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Resource usage of a process and all of its descendants, e.g. the compiler processes started by "cmake --build".
+ * The process tree is sampled periodically while it runs. The JVM reaps a terminated process at once, hence the CPU time
+ * used after the last sample is lost. To keep that gap small for short processes (e.g. most git calls), the interval
+ * starts at a few milliseconds and grows up to SAMPLE_MILLIS. The CPU time is therefore a lower bound.
+ * CPU time and RSS are read from procfs. Without procfs only the CPU time of the live processes is known (ProcessHandle).
+ */
+public class ProcessMetrics {
+
+    private static final long SAMPLE_MILLIS = 500;
+    private static final long FIRST_SAMPLE_MILLIS = 5;
+    // USER_HZ, the unit of the times within /proc/<pid>/stat. Fixed to 100 on all common Linux platforms.
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final boolean PROCFS = Files.isDirectory(Paths.get("/proc/self"));
+
+    private long startNanos;
+    private long endNanos;
+    private volatile long cpuTimeMillis;
+    private volatile long peakRssKB = -1;
+
+    /**
+     * Sample the process tree until the process terminated.
+     * @param process The root of the process tree.
+     * @return The daemon thread sampling the process.
+     */
+    Thread startSampling(Process process) {
+        startNanos = System.nanoTime();
+        Thread sampler = new Thread(() -> {
+            try {
+                long interval = FIRST_SAMPLE_MILLIS;
+                while (process.isAlive()) {
+                    sample(process);
+                    if (process.waitFor(interval, TimeUnit.MILLISECONDS))
+                        break;
+                    interval = Math.min(SAMPLE_MILLIS, interval * 2);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "process-metrics-" + Thread.currentThread().getName());
+        sampler.setDaemon(true);
+        sampler.start();
+        return sampler;
+    }
+
+    void stopSampling(Thread sampler) {
+        endNanos = System.nanoTime();
+        sampler.interrupt();
+    }
+
+    /**
+     * The CPU time of the tree is the sum over all live processes, each including its already terminated children (cutime, cstime).
+     * Hence it grows monotonically, the largest sample is the best estimate.
+     */
+    private void sample(Process process) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        tree.add(process.toHandle());
+        tree.addAll(process.descendants().collect(Collectors.toList()));
+
+        long cpuMillis = 0;
+        long rssKB = 0;
+        for (ProcessHandle handle : tree) {
+            if (PROCFS) {
+                cpuMillis += readCpuTimeMillis(handle.pid());
+                rssKB += readRssKB(handle.pid());
+            } else {
+                cpuMillis += handle.info().totalCpuDuration().map(Duration::toMillis).orElse(0L);
+            }
+        }
+        cpuTimeMillis = Math.max(cpuTimeMillis, cpuMillis);
+        if (PROCFS)
+            peakRssKB = Math.max(peakRssKB, rssKB);
+    }
+
+    private static long readCpuTimeMillis(long pid) {
+        String stat = readProcFile(pid, "stat");
+        // The command name may contain spaces and parentheses, the fields are counted from its closing parenthesis.
+        int commandEnd = stat.lastIndexOf(')');
+        if (commandEnd < 0)
+            return 0;
+        String[] fields = stat.substring(commandEnd + 2).split(" ");
+        if (fields.length < 15)
+            return 0;
+        try {
+            // utime, stime, cutime and cstime are the fields 14 to 17, the first field after the command is field 3.
+            long ticks = 0;
+            for (int i = 11; i <= 14; i++)
+                ticks += Long.parseLong(fields[i]);
+            return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long readRssKB(long pid) {
+        for (String line : readProcFile(pid, "status").split("\n")) {
+            if (line.startsWith("VmRSS:")) {
+                try {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static String readProcFile(long pid, String name) {
+        Path path = Paths.get("/proc", Long.toString(pid), name);
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // The process terminated in the meantime.
+            return "";
+        }
+    }
+
+    /**
+     * @return The System.nanoTime() the sampling started at, 0 if the process never started.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    public long getWallTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+
+    public long getCpuTimeMillis() {
+        return cpuTimeMillis;
+    }
+
+    /**
+     * @return The largest sampled sum of the resident set sizes of the process tree in kB, -1 if unknown.
+     */
+    public long getPeakRssKB() {
+        return peakRssKB;
+    }
+}
@@ -0,0 +1,66 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The complete output of all processes started for one repository, each line prefixed by its stage,
+ * e.g. "[CMAKE_BUILD] [ 42%] Building CXX object ...". Lines written to stderr are kept by the ErrorLog of the repository.
+ * Appending to a compressed file adds a new gzip member, which gzip and zcat read as one file.
+ */
+public class ProcessOutputLog {
+
+    private final String path;
+    private final Writer writer;
+    private boolean failed;
+
+    /**
+     * @param path The log file.
+     * @param compress True to write a gzip compressed file.
+     * @param append True to keep the output of an earlier run, e.g. when a repository is resumed.
+     */
+    public ProcessOutputLog(String path, boolean compress, boolean append) throws IOException {
+        this.path = path;
+        Files.createDirectories(Paths.get(path).getParent());
+        OutputStream outputStream = new FileOutputStream(path, append);
+        if (compress)
+            outputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    public synchronized void write(String stage, String line) {
+        append("[" + stage + "] ", line);
+    }
+
+    private void append(String prefix, String line) {
+        if (failed)
+            return;
+        try {
+            writer.write(prefix);
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            // Reported once, the output of the repository is incomplete from here on.
+            failed = true;
+            System.err.println("Couldn't write the process output to " + path);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Couldn't close the process output " + path);
+            System.err.println(e.getMessage());
+        }
+    }
+}
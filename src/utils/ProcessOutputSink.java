@@ -0,0 +1,27 @@
+package utils;
+
+/**
+ * Receives the output of the processes started by the ProcessHelper.
+ * The methods are called from the pump threads of the process, hence implementations must be thread safe.
+ */
+public interface ProcessOutputSink {
+
+    /**
+     * @param stage The stage of the thread that started the process (see LogContext), "PROCESS" if unknown.
+     * @param line A line the process wrote to stdout, or to stderr if the error stream is merged.
+     */
+    void onOutput(String stage, String line);
+
+    /**
+     * @param stage The stage of the thread that started the process (see LogContext), "PROCESS" if unknown.
+     * @param line A line the process wrote to stderr.
+     */
+    void onError(String stage, String line);
+
+    /**
+     * Called if the process could not be started, e.g. because the tool is not installed. Without a shell nobody else
+     * reports the reason.
+     * @param message The reason.
+     */
+    void onStartFailure(String message);
+}
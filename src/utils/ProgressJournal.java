@@ -0,0 +1,340 @@
+package utils;
+
+import Models.Checkpoint;
+import Models.RMetaData;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import main.Config;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable journal of the completed pipeline stages, used to resume a run after the host went down.
+ * Every completed stage of a repository is appended as a single JSON line and synced to disk immediately. Entries of
+ * unfinished repositories carry a snapshot of the metadata and the coordinator state, so that the repository can continue
+ * with the next stage. The journal is compacted on start and every COMPACT_EVERY entries, keeping the latest entry per index.
+ */
+public class ProgressJournal {
+
+    private static final int COMPACT_EVERY = 10000;
+
+    // static variable single_instance of type Singleton
+    private static ProgressJournal single_instance = null;
+
+    private final String journalPathAndName;
+    private final TypeAdapter<RMetaData> rMetaDataAdapter;
+    // Latest entry of all repositories that started but did not finish yet.
+    private final Map<Integer, Entry> unfinished = new HashMap<>();
+    private final BitSet finished = new BitSet();
+    private FileOutputStream outputStream;
+    private Writer writer;
+    private int appendedEntries;
+
+    private ProgressJournal() {
+        rMetaDataAdapter = RMetaDataTypeAdapter.getGson().getAdapter(RMetaData.class);
+        journalPathAndName = FileHelper.getProgressJournalFilePath();
+        readJournal();
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("Couldn't compact " + journalPathAndName);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // static method to create instance of Singleton class
+    public static synchronized ProgressJournal getInstance()
+    {
+        if (single_instance == null)
+            single_instance = new ProgressJournal();
+
+        return single_instance;
+    }
+
+    /**
+     * @param arrayIndex The index within the repositories.json file.
+     * @return True if the repository was processed and its result was stored.
+     */
+    public synchronized boolean isFinished(int arrayIndex) {
+        return finished.get(arrayIndex);
+    }
+
+    /**
+     * @param arrayIndex The index within the repositories.json file.
+     * @return The latest entry of a repository that was started but did not finish, null otherwise.
+     */
+    public synchronized Entry getUnfinished(int arrayIndex) {
+        return unfinished.get(arrayIndex);
+    }
+
+    /**
+     * Append a completed stage and sync it to disk.
+     * @param entry The completed stage together with the state of the repository.
+     */
+    public synchronized void record(Entry entry) {
+        try {
+            openWriter();
+            writer.write(serialize(entry));
+            writer.flush();
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Couldn't append checkpoint " + entry.checkpoint + " of index " + entry.arrayIndex + " to " + journalPathAndName);
+            System.err.println(e.getMessage());
+        }
+        apply(entry);
+
+        if (++appendedEntries >= COMPACT_EVERY) {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Couldn't compact " + journalPathAndName);
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sync and close the journal. Must be called before the application terminates.
+     */
+    public synchronized void close() {
+        if (writer == null)
+            return;
+        try {
+            writer.flush();
+            outputStream.getFD().sync();
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Couldn't close " + journalPathAndName);
+            System.err.println(e.getMessage());
+        }
+        outputStream = null;
+        writer = null;
+    }
+
+    /**
+     * Rewrite the journal with the latest entry per index. Finished repositories keep an entry without snapshot.
+     * The journal is written to a temporary file first and atomically renamed, so that a crash never loses entries.
+     */
+    private void compact() throws IOException {
+        close();
+        Path path = Paths.get(journalPathAndName);
+        Path tempPath = Paths.get(journalPathAndName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempPath.toFile());
+             Writer tempWriter = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (int arrayIndex = finished.nextSetBit(0); arrayIndex >= 0; arrayIndex = finished.nextSetBit(arrayIndex + 1))
+                tempWriter.write(serialize(new Entry(arrayIndex, null, Checkpoint.PERSISTED)));
+            for (Entry entry : unfinished.values())
+                tempWriter.write(serialize(entry));
+            tempWriter.flush();
+            out.getFD().sync();
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appendedEntries = 0;
+    }
+
+    private void apply(Entry entry) {
+        if (entry.checkpoint == Checkpoint.PERSISTED) {
+            unfinished.remove(entry.arrayIndex);
+            finished.set(entry.arrayIndex);
+        } else {
+            unfinished.put(entry.arrayIndex, entry);
+            finished.clear(entry.arrayIndex);
+        }
+    }
+
+    /**
+     * Lines that can't be parsed, e.g. the last line if the host went down while writing it, are skipped.
+     */
+    private void readJournal() {
+        Path path = Paths.get(journalPathAndName);
+        if (!Files.exists(path))
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty())
+                    continue;
+                try {
+                    apply(deserialize(line));
+                } catch (IOException | IllegalStateException | IllegalArgumentException | JsonParseException e) {
+                    System.err.println("Skipping invalid line " + lineNumber + " of " + journalPathAndName);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Couldn't read " + journalPathAndName);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private String serialize(Entry entry) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter lineWriter = new JsonWriter(line);
+        lineWriter.beginObject();
+        lineWriter.name("index").value(entry.arrayIndex);
+        lineWriter.name("checkpoint").value(entry.checkpoint.name());
+        if (entry.commitId != null)
+            lineWriter.name("commitId").value(entry.commitId);
+        if (entry.checkpoint != Checkpoint.PERSISTED) {
+            lineWriter.name("dependenciesInstalled").value(entry.dependenciesInstalled);
+            lineWriter.name("localBuildStatus").value(entry.localBuildStatus);
+            if (entry.files != null) {
+                lineWriter.name("files").beginArray();
+                for (String file : entry.files)
+                    lineWriter.value(file);
+                lineWriter.endArray();
+            }
+            if (entry.repository != null) {
+                lineWriter.name("repository");
+                rMetaDataAdapter.write(lineWriter, entry.repository);
+            }
+        }
+        lineWriter.endObject();
+        lineWriter.flush();
+        line.write('\n');
+        return line.toString();
+    }
+
+    private Entry deserialize(String line) throws IOException {
+        com.google.gson.stream.JsonReader lineReader = new com.google.gson.stream.JsonReader(new StringReader(line));
+        Integer arrayIndex = null;
+        Checkpoint checkpoint = null;
+        Entry entry = new Entry(-1, null, null);
+        lineReader.beginObject();
+        while (lineReader.hasNext()) {
+            switch (lineReader.nextName()) {
+                case "index":
+                    arrayIndex = lineReader.nextInt();
+                    break;
+                case "checkpoint":
+                    checkpoint = Checkpoint.valueOf(lineReader.nextString());
+                    break;
+                case "commitId":
+                    entry.commitId = lineReader.nextString();
+                    break;
+                case "dependenciesInstalled":
+                    entry.dependenciesInstalled = lineReader.nextBoolean();
+                    break;
+                case "localBuildStatus":
+                    entry.localBuildStatus = lineReader.nextString();
+                    break;
+                case "files":
+                    List<String> files = new ArrayList<>();
+                    lineReader.beginArray();
+                    while (lineReader.hasNext())
+                        files.add(lineReader.nextString());
+                    lineReader.endArray();
+                    entry.files = files;
+                    break;
+                case "repository":
+                    entry.repository = rMetaDataAdapter.read(lineReader);
+                    break;
+                default:
+                    lineReader.skipValue();
+                    break;
+            }
+        }
+        lineReader.endObject();
+        if (arrayIndex == null || checkpoint == null)
+            throw new IllegalStateException("Missing index or checkpoint");
+        entry.arrayIndex = arrayIndex;
+        entry.checkpoint = checkpoint;
+        return entry;
+    }
+
+    private void openWriter() throws IOException {
+        if (outputStream == null) {
+            outputStream = new FileOutputStream(journalPathAndName, true);
+            writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A completed stage of a repository together with everything required to continue with the next stage.
+     */
+    public static class Entry {
+        private int arrayIndex;
+        private String commitId;
+        private Checkpoint checkpoint;
+        private boolean dependenciesInstalled;
+        private String localBuildStatus = "UNKNOWN";
+        private List<String> files;
+        private RMetaData repository;
+
+        public Entry(int arrayIndex, String commitId, Checkpoint checkpoint) {
+            this.arrayIndex = arrayIndex;
+            this.commitId = commitId;
+            this.checkpoint = checkpoint;
+        }
+
+        public int getArrayIndex() {
+            return arrayIndex;
+        }
+
+        public String getCommitId() {
+            return commitId;
+        }
+
+        public Checkpoint getCheckpoint() {
+            return checkpoint;
+        }
+
+        public boolean isDependenciesInstalled() {
+            return dependenciesInstalled;
+        }
+
+        public void setDependenciesInstalled(boolean dependenciesInstalled) {
+            this.dependenciesInstalled = dependenciesInstalled;
+        }
+
+        public String getLocalBuildStatus() {
+            return localBuildStatus;
+        }
+
+        public void setLocalBuildStatus(String localBuildStatus) {
+            this.localBuildStatus = localBuildStatus;
+        }
+
+        /**
+         * @return The LLVM IR files extracted for the analysis, null if the extraction did not run yet.
+         */
+        public List<String> getFiles() {
+            return files;
+        }
+
+        public void setFiles(List<String> files) {
+            this.files = files == null ? null : Collections.unmodifiableList(new ArrayList<>(files));
+        }
+
+        /**
+         * @return A snapshot of the metadata at the time the stage completed.
+         */
+        public RMetaData getRepository() {
+            return repository;
+        }
+
+        public void setRepository(RMetaData repository) {
+            this.repository = repository;
+        }
+    }
+}
@@ -53,4 +53,22 @@ public class PropertyFileReader {
         return prop.getProperty(config.toString());
     }
 
+    /**
+     * Read an optional numeric property.
+     * @param config The property to read.
+     * @param defaultValue The value used when the property is missing or empty.
+     * @return The configured number or the default value.
+     */
+    public int getIntProperty(EConfig config, int defaultValue) {
+        String value = getProperty(config);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Property '" + config + "' must be a number. Got: " + value + ". Using default value " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+
 }
@@ -0,0 +1,385 @@
+package utils;
+
+import Models.AnalysisResult;
+import Models.RMetaData;
+import Models.StageMetrics;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams RMetaData objects directly from and to json tokens, without building an intermediate JsonElement tree
+ * or using reflection. The json layout is the same as the one of Gson's reflective adapter, so existing
+ * repositories.json files stay readable.
+ * Dates are written in Gson's default format (e.g. "Nov 7, 2015, 2:19:20 AM") using an immutable, thread-safe formatter.
+ */
+public class RMetaDataTypeAdapter extends TypeAdapter<RMetaData> {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d, yyyy, h:mm:ss a", Locale.US);
+    // Written by Gson running on Java 8.
+    private static final DateTimeFormatter LEGACY_DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.US);
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final Gson GSON = new GsonBuilder().registerTypeAdapter(RMetaData.class, new RMetaDataTypeAdapter()).create();
+
+    /**
+     * @return A Gson instance that uses this adapter for all RMetaData objects. Gson instances are thread-safe.
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    @Override
+    public void write(JsonWriter out, RMetaData rMetaData) throws IOException {
+        if (rMetaData == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(rMetaData.getId());
+        writeString(out, "name", rMetaData.getName());
+        writeString(out, "owner", rMetaData.getOwner());
+        writeString(out, "ownerType", rMetaData.getOwnerType());
+        writeString(out, "description", rMetaData.getDescription());
+        writeString(out, "language", rMetaData.getLanguage());
+        out.name("hasDownloads").value(rMetaData.isHasDownloads());
+        out.name("size").value(rMetaData.getSize());
+        writeDate(out, "createdAt", rMetaData.getCreatedAt());
+        writeDate(out, "pushedAt", rMetaData.getPushedAt());
+        writeString(out, "defaultBranch", rMetaData.getDefaultBranch());
+        writeString(out, "latestCommitId", rMetaData.getLatestCommitId());
+        out.name("isPrivate").value(rMetaData.isPrivate());
+        out.name("forksCount").value(rMetaData.getForksCount());
+        out.name("openIssuesCount").value(rMetaData.getOpenIssuesCount());
+        out.name("stargazersCount").value(rMetaData.getStargazersCount());
+        writeString(out, "htmlUrl", rMetaData.getHtmlUrl());
+        writeString(out, "cloneUrl", rMetaData.getCloneUrl());
+        writeString(out, "buildSystem", rMetaData.getBuildSystem());
+        writeStringList(out, "buildFilePath", rMetaData.getBuildFilePath());
+        writeString(out, "buildStatus", rMetaData.getBuildStatus());
+        out.name("executables").value(rMetaData.getExecutables());
+        out.name("libraries").value(rMetaData.getLibraries());
+        out.name("archives").value(rMetaData.getArchives());
+        writeStringList(out, "errorMessage", rMetaData.getErrorMessage());
+        out.name("errorLines").value(rMetaData.getErrorLines());
+        writeString(out, "errorLogFile", rMetaData.getErrorLogFile());
+        writeStringList(out, "packageDependencies", rMetaData.getPackageDependencies());
+        writeStringList(out, "timedOutStages", rMetaData.getTimedOutStages());
+        out.name("ccacheHits").value(rMetaData.getCcacheHits());
+        out.name("ccacheMisses").value(rMetaData.getCcacheMisses());
+        writeString(out, "checkoutMode", rMetaData.getCheckoutMode());
+        out.name("workspaceBytes").value(rMetaData.getWorkspaceBytes());
+        out.name("irFiles").value(rMetaData.getIrFiles());
+        writeStageMetrics(out, rMetaData.getStageMetrics());
+        writeAnalysisResults(out, rMetaData.getAnalysisResults());
+        out.endObject();
+    }
+
+    @Override
+    public RMetaData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        RMetaData rMetaData = new RMetaData();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    rMetaData.setId(in.nextLong());
+                    break;
+                case "name":
+                    rMetaData.setName(in.nextString());
+                    break;
+                case "owner":
+                    rMetaData.setOwner(in.nextString());
+                    break;
+                case "ownerType":
+                    rMetaData.setOwnerType(in.nextString());
+                    break;
+                case "description":
+                    rMetaData.setDescription(in.nextString());
+                    break;
+                case "language":
+                    rMetaData.setLanguage(in.nextString());
+                    break;
+                case "hasDownloads":
+                    rMetaData.setHasDownloads(in.nextBoolean());
+                    break;
+                case "size":
+                    rMetaData.setSize(in.nextInt());
+                    break;
+                case "createdAt":
+                    rMetaData.setCreatedAt(parseDate(in.nextString()));
+                    break;
+                case "pushedAt":
+                    rMetaData.setPushedAt(parseDate(in.nextString()));
+                    break;
+                case "defaultBranch":
+                    rMetaData.setDefaultBranch(in.nextString());
+                    break;
+                case "latestCommitId":
+                    rMetaData.setLatestCommitId(in.nextString());
+                    break;
+                case "isPrivate":
+                    rMetaData.setPrivate(in.nextBoolean());
+                    break;
+                case "forksCount":
+                    rMetaData.setForksCount(in.nextInt());
+                    break;
+                case "openIssuesCount":
+                    rMetaData.setOpenIssuesCount(in.nextInt());
+                    break;
+                case "stargazersCount":
+                    rMetaData.setStargazersCount(in.nextInt());
+                    break;
+                case "htmlUrl":
+                    rMetaData.setHtmlUrl(in.nextString());
+                    break;
+                case "cloneUrl":
+                    rMetaData.setCloneUrl(in.nextString());
+                    break;
+                case "buildSystem":
+                    rMetaData.setBuildSystem(in.nextString());
+                    break;
+                case "buildFilePath":
+                    rMetaData.setBuildFilePath(readStringList(in));
+                    break;
+                case "buildStatus":
+                    rMetaData.setBuildStatus(in.nextString());
+                    break;
+                case "executables":
+                    rMetaData.setExecutables(in.nextInt());
+                    break;
+                case "libraries":
+                    rMetaData.setLibraries(in.nextInt());
+                    break;
+                case "archives":
+                    rMetaData.setArchives(in.nextInt());
+                    break;
+                case "errorMessage":
+                    rMetaData.setErrorMessage(readStringList(in));
+                    break;
+                case "errorLines":
+                    rMetaData.setErrorLines(in.nextLong());
+                    break;
+                case "errorLogFile":
+                    rMetaData.setErrorLogFile(in.nextString());
+                    break;
+                case "packageDependencies":
+                    rMetaData.setPackageDependencies(readStringList(in));
+                    break;
+                case "timedOutStages":
+                    rMetaData.setTimedOutStages(readStringList(in));
+                    break;
+                case "ccacheHits":
+                    rMetaData.setCcacheHits(in.nextInt());
+                    break;
+                case "ccacheMisses":
+                    rMetaData.setCcacheMisses(in.nextInt());
+                    break;
+                case "checkoutMode":
+                    rMetaData.setCheckoutMode(in.nextString());
+                    break;
+                case "workspaceBytes":
+                // Written by earlier versions.
+                case "clonedBytes":
+                    rMetaData.setWorkspaceBytes(in.nextLong());
+                    break;
+                case "irFiles":
+                    rMetaData.setIrFiles(in.nextInt());
+                    break;
+                case "stageMetrics":
+                    rMetaData.setStageMetrics(readStageMetrics(in));
+                    break;
+                case "analysisResults":
+                    rMetaData.setAnalysisResults(readAnalysisResults(in));
+                    break;
+                default:
+                    // e.g. fields written by older crawler versions
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return rMetaData;
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null)
+            out.name(name).value(value);
+    }
+
+    private static void writeDate(JsonWriter out, String name, Date value) throws IOException {
+        if (value != null)
+            out.name(name).value(DATE_FORMAT.format(LocalDateTime.ofInstant(value.toInstant(), ZONE)));
+    }
+
+    private static void writeStringList(JsonWriter out, String name, List<String> values) throws IOException {
+        if (values == null)
+            return;
+        out.name(name).beginArray();
+        for (String value : values)
+            out.value(value);
+        out.endArray();
+    }
+
+    private static List<String> readStringList(JsonReader in) throws IOException {
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                values.add(null);
+            } else {
+                values.add(in.nextString());
+            }
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static void writeStageMetrics(JsonWriter out, List<StageMetrics> stageMetrics) throws IOException {
+        if (stageMetrics == null)
+            return;
+        out.name("stageMetrics").beginArray();
+        for (StageMetrics metrics : stageMetrics) {
+            out.beginObject();
+            writeString(out, "stage", metrics.getStage());
+            out.name("wallTimeMillis").value(metrics.getWallTimeMillis());
+            out.name("processes").value(metrics.getProcesses());
+            out.name("cpuTimeMillis").value(metrics.getCpuTimeMillis());
+            out.name("peakRssKB").value(metrics.getPeakRssKB());
+            out.name("exitCode").value(metrics.getExitCode());
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private static List<StageMetrics> readStageMetrics(JsonReader in) throws IOException {
+        List<StageMetrics> stageMetrics = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            StageMetrics metrics = new StageMetrics();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "stage":
+                        metrics.setStage(in.nextString());
+                        break;
+                    case "wallTimeMillis":
+                        metrics.setWallTimeMillis(in.nextLong());
+                        break;
+                    case "processes":
+                        metrics.setProcesses(in.nextInt());
+                        break;
+                    case "cpuTimeMillis":
+                        metrics.setCpuTimeMillis(in.nextLong());
+                        break;
+                    case "peakRssKB":
+                        metrics.setPeakRssKB(in.nextLong());
+                        break;
+                    case "exitCode":
+                        metrics.setExitCode(in.nextInt());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            stageMetrics.add(metrics);
+        }
+        in.endArray();
+        return stageMetrics;
+    }
+
+    private static void writeAnalysisResults(JsonWriter out, List<AnalysisResult> analysisResults) throws IOException {
+        if (analysisResults == null)
+            return;
+        out.name("analysisResults").beginArray();
+        for (AnalysisResult result : analysisResults) {
+            out.beginObject();
+            writeString(out, "file", result.getFile());
+            out.name("exitCode").value(result.getExitCode());
+            out.name("wallTimeMillis").value(result.getWallTimeMillis());
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private static List<AnalysisResult> readAnalysisResults(JsonReader in) throws IOException {
+        List<AnalysisResult> analysisResults = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            AnalysisResult result = new AnalysisResult();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "file":
+                        result.setFile(in.nextString());
+                        break;
+                    case "exitCode":
+                        result.setExitCode(in.nextInt());
+                        break;
+                    case "wallTimeMillis":
+                        result.setWallTimeMillis(in.nextLong());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            analysisResults.add(result);
+        }
+        in.endArray();
+        return analysisResults;
+    }
+
+    private static Date parseDate(String value) throws IOException {
+        // Java 9+ CLDR data may separate the time and the AM/PM marker with a narrow no-break space.
+        String normalized = value.replace('\u202F', ' ');
+        for (DateTimeFormatter formatter : new DateTimeFormatter[]{DATE_FORMAT, LEGACY_DATE_FORMAT}) {
+            try {
+                return Date.from(LocalDateTime.parse(normalized, formatter).atZone(ZONE).toInstant());
+            } catch (DateTimeParseException ignored) {
+                // try the next format
+            }
+        }
+        try {
+            return Date.from(Instant.parse(normalized));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Unparseable date: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte offset index of the top level elements of a json array file.
+ * The index is built by a single pass over the file, persisted next to it (e.g. repositories.json.idx) and reused as long as
+ * the size and modification time of the json file did not change. Single elements are then read with a positional read,
+ * without parsing any other element of the file.
+ */
+public class RepositoryIndex {
+
+    private static final int MAGIC = 0x52494458; // "RIDX"
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE_SUFFIX = ".idx";
+
+    private final Path jsonPath;
+    private final long fileSize;
+    private final long lastModified;
+    private final long[] startOffsets;
+    private final long[] endOffsets;
+    private FileChannel channel;
+
+    private RepositoryIndex(Path jsonPath, long fileSize, long lastModified, long[] startOffsets, long[] endOffsets) {
+        this.jsonPath = jsonPath;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.startOffsets = startOffsets;
+        this.endOffsets = endOffsets;
+    }
+
+    /**
+     * Load the persisted index of the given json file, or build and persist a new one if there is none or it is outdated.
+     * @param pathToJsonFile Path to a file containing a json array.
+     * @return The index of the json file.
+     */
+    public static RepositoryIndex loadOrBuild(String pathToJsonFile) throws IOException {
+        Path jsonPath = Paths.get(pathToJsonFile);
+        Path indexPath = Paths.get(pathToJsonFile + INDEX_FILE_SUFFIX);
+        long fileSize = Files.size(jsonPath);
+        long lastModified = Files.getLastModifiedTime(jsonPath).toMillis();
+
+        if (Files.exists(indexPath)) {
+            RepositoryIndex index = load(jsonPath, indexPath, fileSize, lastModified);
+            if (index != null)
+                return index;
+        }
+
+        RepositoryIndex index = build(jsonPath, fileSize, lastModified);
+        try {
+            index.save(indexPath);
+        } catch (IOException e) {
+            // The index is only a cache, the file may be located on a read only volume.
+            System.err.println("Couldn't persist index file " + indexPath + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * @return True if the json file was modified after the index has been built.
+     */
+    public boolean isStale() {
+        try {
+            return Files.size(jsonPath) != fileSize || Files.getLastModifiedTime(jsonPath).toMillis() != lastModified;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    public int size() {
+        return startOffsets.length;
+    }
+
+    /**
+     * Read the raw bytes of a single array element.
+     * @param arrayIndex The index of the element within the json array.
+     * @return The UTF-8 encoded json of the element.
+     */
+    public byte[] readElement(int arrayIndex) throws IOException {
+        long start = startOffsets[arrayIndex];
+        ByteBuffer buffer = ByteBuffer.allocate((int) (endOffsets[arrayIndex] - start));
+        FileChannel fileChannel = getChannel();
+        while (buffer.hasRemaining()) {
+            // Positional reads do not move the channel position, hence the channel can be shared between threads.
+            if (fileChannel.read(buffer, start + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file " + jsonPath + ". The index is outdated.");
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Close the file channel used for reading elements.
+     */
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Couldn't close " + jsonPath + ": " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private synchronized FileChannel getChannel() throws IOException {
+        if (channel == null)
+            channel = FileChannel.open(jsonPath, StandardOpenOption.READ);
+        return channel;
+    }
+
+    /**
+     * Scan the json file once and remember where each top level array element starts and ends.
+     * Only string literals and nesting are tracked, the elements themselves are not parsed.
+     */
+    private static RepositoryIndex build(Path jsonPath, long fileSize, long lastModified) throws IOException {
+        LongList starts = new LongList();
+        LongList ends = new LongList();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long elementStart = -1;
+        long lastNonWhitespace = -1;
+        long position = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(jsonPath), 1 << 16)) {
+            int b;
+            while ((b = in.read()) != -1) {
+                if (inString) {
+                    if (escaped)
+                        escaped = false;
+                    else if (b == '\\')
+                        escaped = true;
+                    else if (b == '"')
+                        inString = false;
+                    lastNonWhitespace = position;
+                    position++;
+                    continue;
+                }
+
+                boolean whitespace = b == ' ' || b == '\n' || b == '\r' || b == '\t';
+                if (depth == 1 && (b == ',' || b == ']')) {
+                    if (elementStart >= 0) {
+                        starts.add(elementStart);
+                        ends.add(lastNonWhitespace + 1);
+                        elementStart = -1;
+                    }
+                } else if (depth == 1 && !whitespace && elementStart < 0) {
+                    elementStart = position;
+                }
+
+                if (b == '"') {
+                    inString = true;
+                } else if (b == '[' || b == '{') {
+                    depth++;
+                } else if (b == ']' || b == '}') {
+                    depth--;
+                }
+                if (!whitespace)
+                    lastNonWhitespace = position;
+                position++;
+            }
+        }
+        return new RepositoryIndex(jsonPath, fileSize, lastModified, starts.toArray(), ends.toArray());
+    }
+
+    private static RepositoryIndex load(Path jsonPath, Path indexPath, long fileSize, long lastModified) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fileSize || in.readLong() != lastModified)
+                return null;
+            int count = in.readInt();
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            for (int i = 0; i < count; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+            }
+            return new RepositoryIndex(jsonPath, fileSize, lastModified, starts, ends);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable index file " + indexPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void save(Path indexPath) throws IOException {
+        Path tempPath = Paths.get(indexPath + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeInt(startOffsets.length);
+            for (int i = 0; i < startOffsets.length; i++) {
+                out.writeLong(startOffsets[i]);
+                out.writeLong(endOffsets[i]);
+            }
+        }
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Growable array of primitive longs, avoiding one boxed Long per repository.
+     */
+    private static class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                long[] grown = new long[values.length * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            long[] result = new long[size];
+            System.arraycopy(values, 0, result, 0, size);
+            return result;
+        }
+    }
+}
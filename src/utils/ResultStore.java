@@ -0,0 +1,483 @@
+package utils;
+
+import Models.RMetaData;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import main.Config;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only store for the results of the ContainerCoordinator.
+ * Every processed repository is appended as a single JSON line ({"index":..,"repository":{..}}) to the results.json file,
+ * instead of rewriting the whole repositories.json file. Later lines for the same index replace earlier ones.
+ * Only the position of the latest line of each index is kept in memory, the result itself is read from the file on demand.
+ * The results can be merged back into the repositories.json file with {@link #compact()}.
+ */
+public class ResultStore {
+
+    private static final String INDEX = "index";
+    private static final String REPOSITORY = "repository";
+    // Every line starts with the index, hence it is found without parsing the repository.
+    private static final Pattern INDEX_PREFIX = Pattern.compile("^\\{\"" + INDEX + "\":(\\d+),");
+    private static final int PREFIX_BYTES = 32;
+    // A location holds the number of the results file in the upper bits and the offset of the line in the lower ones.
+    private static final int OFFSET_BITS = 48;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    // static variable single_instance of type Singleton
+    private static ResultStore single_instance = null;
+
+    private final String resultsJsonPathAndName;
+    private final TypeAdapter<RMetaData> rMetaDataAdapter;
+    private FileOutputStream outputStream;
+    private int unsyncedRecords;
+    private long lastSyncTime;
+    // Built on first use: the results files of this and (with sharding enabled) all other nodes, and the latest line of each index.
+    private List<Path> resultFiles;
+    private int ownFileNumber;
+    private LocationTable locations;
+    private final Map<Integer, FileChannel> readChannels = new HashMap<>();
+
+    private ResultStore() {
+        rMetaDataAdapter = RMetaDataTypeAdapter.getGson().getAdapter(RMetaData.class);
+        resultsJsonPathAndName = FileHelper.getResultsJsonFilePath();
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    // static method to create instance of Singleton class
+    public static synchronized ResultStore getInstance()
+    {
+        if (single_instance == null)
+            single_instance = new ResultStore();
+
+        return single_instance;
+    }
+
+    /**
+     * Append the result of a repository to the results file. The file is synced to disk after every
+     * Config.RESULTSYNCEVERY records or Config.RESULTSYNCMILLIS milliseconds, whatever comes first.
+     * @param rMetaData The updated metadata.
+     * @param arrayIndex The index within the repositories.json file.
+     */
+    public synchronized void append(RMetaData rMetaData, int arrayIndex) {
+        try {
+            // The record is serialized completely before it is written, so that the file only ever contains whole lines.
+            StringWriter record = new StringWriter();
+            JsonWriter recordWriter = new JsonWriter(record);
+            recordWriter.beginObject();
+            recordWriter.name(INDEX).value(arrayIndex);
+            recordWriter.name(REPOSITORY);
+            rMetaDataAdapter.write(recordWriter, rMetaData);
+            recordWriter.endObject();
+            recordWriter.flush();
+            record.write('\n');
+
+            buildLocations();
+            openWriter();
+            long offset = outputStream.getChannel().size();
+            outputStream.write(record.toString().getBytes(StandardCharsets.UTF_8));
+            locations.put(arrayIndex, toLocation(ownFileNumber, offset));
+            unsyncedRecords++;
+            if (unsyncedRecords >= Config.RESULTSYNCEVERY || System.currentTimeMillis() - lastSyncTime >= Config.RESULTSYNCMILLIS)
+                sync();
+        } catch (IOException e) {
+            System.err.println("Couldn't append result for index " + arrayIndex + " to " + resultsJsonPathAndName);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Force all appended results to disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (outputStream != null)
+            outputStream.getFD().sync();
+        unsyncedRecords = 0;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Sync and close the results file. Must be called before the application terminates.
+     */
+    public synchronized void close() {
+        if (outputStream == null)
+            return;
+        try {
+            sync();
+            outputStream.close();
+        } catch (IOException e) {
+            System.err.println("Couldn't close " + resultsJsonPathAndName);
+            System.err.println(e.getMessage());
+        }
+        outputStream = null;
+    }
+
+    /**
+     * @param arrayIndex The index within the repositories.json file.
+     * @return True if a result was appended for the index, by this run, an earlier one or (with sharding enabled) another node.
+     */
+    public synchronized boolean hasResult(int arrayIndex) {
+        buildLocations();
+        return locations.get(arrayIndex) >= 0;
+    }
+
+    /**
+     * Read the latest result of a repository from the results files.
+     * @param arrayIndex The index within the repositories.json file.
+     * @return The result or null if there is none or it can not be read.
+     */
+    public synchronized RMetaData readResult(int arrayIndex) {
+        byte[] line = readRawResult(arrayIndex);
+        if (line == null)
+            return null;
+        try {
+            return readRecord(new String(line, StandardCharsets.UTF_8));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            System.err.println("Couldn't read the result for index " + arrayIndex);
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the latest result of a repository without deserializing it.
+     * @param arrayIndex The index within the repositories.json file.
+     * @return The record line ({"index":N,"repository":{...}}) or null if there is none or it can not be read.
+     */
+    public synchronized byte[] readRawResult(int arrayIndex) {
+        buildLocations();
+        long location = locations.get(arrayIndex);
+        if (location < 0)
+            return null;
+        int fileNumber = (int) (location >>> OFFSET_BITS);
+        try {
+            return readLine(fileNumber, location & OFFSET_MASK);
+        } catch (IOException e) {
+            System.err.println("Couldn't read the result for index " + arrayIndex + " from " + resultFiles.get(fileNumber));
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The indices that have a result, in ascending order.
+     */
+    public synchronized int[] getResultIndices() {
+        buildLocations();
+        return locations.sortedKeys();
+    }
+
+    /**
+     * @return The results file of this node and, with sharding enabled, the results files of all other nodes.
+     */
+    private List<Path> getResultFiles() {
+        List<Path> resultFiles = new ArrayList<>();
+        Path ownFile = Paths.get(resultsJsonPathAndName);
+        if (Config.SHARDING) {
+            try (DirectoryStream<Path> nodeFiles = Files.newDirectoryStream(ownFile.toAbsolutePath().getParent(), "results*.json")) {
+                for (Path nodeFile : nodeFiles)
+                    resultFiles.add(nodeFile);
+            } catch (IOException e) {
+                System.err.println("Couldn't list the results files of the other nodes");
+                System.err.println(e.getMessage());
+            }
+            Collections.sort(resultFiles);
+        } else if (Files.exists(ownFile)) {
+            resultFiles.add(ownFile);
+        }
+        return resultFiles;
+    }
+
+    /**
+     * Scan all results files for the latest line of each index. Lines that can't be parsed, e.g. a line that was only
+     * written partially because of a crash, are skipped. Does nothing if the locations are known already.
+     */
+    private void buildLocations() {
+        if (locations != null)
+            return;
+        locations = new LocationTable();
+        resultFiles = getResultFiles();
+        Path ownFile = Paths.get(resultsJsonPathAndName).toAbsolutePath().normalize();
+        ownFileNumber = -1;
+        for (int fileNumber = 0; fileNumber < resultFiles.size(); fileNumber++) {
+            if (resultFiles.get(fileNumber).toAbsolutePath().normalize().equals(ownFile))
+                ownFileNumber = fileNumber;
+            scanResultFile(fileNumber);
+        }
+        if (ownFileNumber < 0) {
+            ownFileNumber = resultFiles.size();
+            resultFiles.add(ownFile);
+        }
+    }
+
+    private void scanResultFile(int fileNumber) {
+        Path path = resultFiles.get(fileNumber);
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[1 << 16];
+            byte[] prefix = new byte[PREFIX_BYTES];
+            int prefixLength = 0;
+            long offset = 0;
+            long lineStart = 0;
+            int lineNumber = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++, offset++) {
+                    if (buffer[i] == '\n') {
+                        lineNumber++;
+                        Matcher index = INDEX_PREFIX.matcher(new String(prefix, 0, prefixLength, StandardCharsets.UTF_8));
+                        if (index.find())
+                            locations.put(Integer.parseInt(index.group(1)), toLocation(fileNumber, lineStart));
+                        else if (prefixLength > 0)
+                            System.err.println("Skipping invalid line " + lineNumber + " of " + path);
+                        prefixLength = 0;
+                        lineStart = offset + 1;
+                    } else if (prefixLength < PREFIX_BYTES) {
+                        prefix[prefixLength++] = buffer[i];
+                    }
+                }
+            }
+            // A last line without line break was not written completely.
+            if (offset > lineStart)
+                System.err.println("Skipping incomplete line " + (lineNumber + 1) + " of " + path);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Couldn't read " + path);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private byte[] readLine(int fileNumber, long offset) throws IOException {
+        FileChannel channel = readChannels.get(fileNumber);
+        if (channel == null) {
+            channel = FileChannel.open(resultFiles.get(fileNumber), StandardOpenOption.READ);
+            readChannels.put(fileNumber, channel);
+        }
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+        long position = offset;
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    line.write(bytes, 0, i);
+                    return line.toByteArray();
+                }
+            }
+            line.write(bytes, 0, read);
+            position += read;
+            buffer.clear();
+        }
+        return line.toByteArray();
+    }
+
+    private RMetaData readRecord(String line) throws IOException {
+        com.google.gson.stream.JsonReader recordReader = new com.google.gson.stream.JsonReader(new StringReader(line));
+        Integer arrayIndex = null;
+        RMetaData rMetaData = null;
+        recordReader.beginObject();
+        while (recordReader.hasNext()) {
+            String name = recordReader.nextName();
+            if (name.equals(INDEX))
+                arrayIndex = recordReader.nextInt();
+            else if (name.equals(REPOSITORY))
+                rMetaData = rMetaDataAdapter.read(recordReader);
+            else
+                recordReader.skipValue();
+        }
+        recordReader.endObject();
+        if (arrayIndex == null)
+            throw new IllegalStateException("Missing index");
+        return rMetaData;
+    }
+
+    /**
+     * Merge all appended results into the repositories.json file and empty the results file afterwards.
+     * The merged array is streamed into a temporary file first and then atomically renamed onto the repositories.json file,
+     * so that a crash never leaves a truncated file behind. Results are only discarded after the rename succeeded.
+     * Every repository is written as an escaped json string, the format of the crawler, whatever format it had before.
+     * With sharding enabled, the results of all nodes are merged, hence no node may be running meanwhile.
+     */
+    public synchronized void compact() throws IOException {
+        close();
+        buildLocations();
+        Path repositoriesPath = Paths.get(FileHelper.getRepositoriesJsonFilePath());
+        Path tempPath = Paths.get(repositoriesPath + ".tmp");
+
+        JsonReader jsonReader = JsonReader.getInstance();
+        synchronized (jsonReader) {
+            int count = jsonReader.getRepositoryCount();
+            for (int arrayIndex : locations.sortedKeys()) {
+                if (arrayIndex >= count)
+                    System.err.println("Dropping result for index " + arrayIndex + ". It is out of bounds of " + repositoriesPath);
+            }
+
+            // Unchanged repositories are copied as they are if they are stored as strings already, only the updated ones are serialized again.
+            try (FileOutputStream out = new FileOutputStream(tempPath.toFile());
+                 BufferedOutputStream bufferedOut = new BufferedOutputStream(out, 1 << 16)) {
+                bufferedOut.write('[');
+                for (int arrayIndex = 0; arrayIndex < count; arrayIndex++) {
+                    if (arrayIndex > 0)
+                        bufferedOut.write(',');
+                    RMetaData result = locations.get(arrayIndex) >= 0 ? readResult(arrayIndex) : null;
+                    if (result != null) {
+                        bufferedOut.write(toJsonString(serialize(result)));
+                    } else {
+                        byte[] element = jsonReader.readRawRepository(arrayIndex);
+                        bufferedOut.write(isJsonString(element) ? element : toJsonString(new String(element, StandardCharsets.UTF_8).trim()));
+                    }
+                }
+                bufferedOut.write(']');
+                bufferedOut.flush();
+                out.getFD().sync();
+            }
+            Files.move(tempPath, repositoriesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        closeReadChannels();
+        for (Path path : resultFiles)
+            Files.deleteIfExists(path);
+        locations = null;
+        resultFiles = null;
+    }
+
+    private String serialize(RMetaData rMetaData) throws IOException {
+        StringWriter json = new StringWriter();
+        rMetaDataAdapter.write(new JsonWriter(json), rMetaData);
+        return json.toString();
+    }
+
+    private static byte[] toJsonString(String json) {
+        return new JsonPrimitive(json).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isJsonString(byte[] element) {
+        for (byte b : element) {
+            if (!Character.isWhitespace(b))
+                return b == '"';
+        }
+        return false;
+    }
+
+    private static long toLocation(int fileNumber, long offset) {
+        return ((long) fileNumber << OFFSET_BITS) | offset;
+    }
+
+    private void closeReadChannels() {
+        for (FileChannel channel : readChannels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Only read from.
+            }
+        }
+        readChannels.clear();
+    }
+
+    private void openWriter() throws IOException {
+        if (outputStream == null) {
+            outputStream = new FileOutputStream(resultsJsonPathAndName, true);
+            // Terminate a line left incomplete by a crash, so that the next record starts on a line of its own.
+            FileChannel channel = outputStream.getChannel();
+            long size = channel.size();
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                try (FileChannel reader = FileChannel.open(Paths.get(resultsJsonPathAndName), StandardOpenOption.READ)) {
+                    reader.read(last, size - 1);
+                }
+                if (last.get(0) != '\n')
+                    outputStream.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Maps an index to the location of its latest result. Open addressing with primitive arrays, since a boxed map
+     * needs several times the memory for millions of results.
+     */
+    private static class LocationTable {
+        private int[] keys = new int[1024];
+        private long[] values = new long[1024];
+        private int size;
+
+        private LocationTable() {
+            Arrays.fill(keys, -1);
+        }
+
+        private void put(int key, long value) {
+            if (size * 2 >= keys.length)
+                resize();
+            int slot = findSlot(keys, key);
+            if (keys[slot] < 0) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        /**
+         * @return The location or -1 if there is none.
+         */
+        private long get(int key) {
+            int slot = findSlot(keys, key);
+            return keys[slot] < 0 ? -1 : values[slot];
+        }
+
+        private int[] sortedKeys() {
+            int[] sorted = new int[size];
+            int i = 0;
+            for (int key : keys) {
+                if (key >= 0)
+                    sorted[i++] = key;
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] >= 0) {
+                    int slot = findSlot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int findSlot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] >= 0 && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+}
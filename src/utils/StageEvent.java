@@ -0,0 +1,65 @@
+package utils;
+
+import Models.RMetaData;
+import Models.Stage;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import main.Config;
+
+/**
+ * Java Flight Recorder event covering a single pipeline stage of a repository.
+ * Only created if jfrEvents is enabled within the config.properties file, otherwise begin returns null and commit does nothing.
+ */
+@Name("containercoordinator.Stage")
+@Label("Pipeline Stage")
+@Category("ContainerCoordinator")
+@Description("A stage of the container pipeline for a single repository")
+public class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Repository Id")
+    long repositoryId;
+
+    @Label("Repository Name")
+    String repositoryName;
+
+    @Label("Exit Code")
+    int exitCode;
+
+    /**
+     * Start timing a stage.
+     * @param stage The stage.
+     * @param rMetaData The repository the stage runs for.
+     * @return The started event or null if JFR events are disabled.
+     */
+    public static StageEvent begin(Stage stage, RMetaData rMetaData) {
+        if (!Config.JFREVENTS)
+            return null;
+        StageEvent event = new StageEvent();
+        event.stage = stage.toString();
+        event.repositoryId = rMetaData.getId();
+        event.repositoryName = rMetaData.getName();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finish and commit a stage event.
+     * @param event The event returned by begin, may be null.
+     * @param exitCode The exit code of the stage, 0 on success.
+     */
+    public static void commit(StageEvent event, int exitCode) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.exitCode = exitCode;
+            event.commit();
+        }
+    }
+}